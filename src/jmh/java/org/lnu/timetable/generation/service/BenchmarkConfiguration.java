@@ -0,0 +1,26 @@
+package org.lnu.timetable.generation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Spring context of the benchmarks: the services and the application properties without the command line runner
+ */
+@Configuration
+@ComponentScan(basePackages = {"org.lnu.timetable.generation.service", "org.lnu.timetable.generation.util"})
+@PropertySource("classpath:application.properties")
+public class BenchmarkConfiguration {
+
+    @Bean
+    public ObjectMapper objectMapper() {
+        // The model classes are deserialized through their constructors as in the Spring Boot auto-configuration
+        return Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule())
+                .build();
+    }
+}
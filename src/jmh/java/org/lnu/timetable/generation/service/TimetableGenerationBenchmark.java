@@ -0,0 +1,176 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.model.TimetableRequirementsExample;
+import org.lnu.timetable.generation.service.TimetableGenerationService.CrossoverResult;
+import org.lnu.timetable.generation.util.WorstLessonsSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the evaluation and the genetic operators on the bundled examples. Run from the project root with
+ * {@code mvn -P benchmark compile exec:exec}, the GC profiler reports the allocation rate of every benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimetableGenerationBenchmark {
+
+    @Param({"Example1.json", "Example2.json", "Example3.json", "Example4.json"})
+    public String exampleFileName;
+
+    private AnnotationConfigApplicationContext context;
+
+    private TimetableEvaluationService timetableEvaluationService;
+    private TimetableGenerationService timetableGenerationService;
+
+    private ProblemIndex problemIndex;
+    private SplittableRandom random;
+
+    private List<EvaluatedTimetable> population;
+    private List<EvaluatedTimetable> populationWithOffspring;
+
+    /**
+     * Arena that keeps no buffers, so that the operators never overwrite the timetables shared by the invocations
+     */
+    private PopulationArena allocatingArena;
+
+    /**
+     * Population evolved by the generation benchmark, generation after generation in its own arena
+     */
+    private List<EvaluatedTimetable> evolvingPopulation;
+    private PopulationArena evolvingPopulationArena;
+    private FitnessCache evolvingFitnessCache;
+
+    private int[] worstLessonIndexes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+
+        timetableEvaluationService = context.getBean(TimetableEvaluationService.class);
+        timetableGenerationService = context.getBean(TimetableGenerationService.class);
+
+        TimetableRequirementsExample example = context.getBean(TimetableRequirementsGenerationService.class)
+                .readExampleTimetableRequirementsExample(exampleFileName);
+        TimetableRequirements timetableRequirements = context.getBean(TimetableGenerationDemo.class)
+                .createTimetableRequirements(example);
+
+        problemIndex = context.getBean(ProblemIndexService.class).createProblemIndex(timetableRequirements);
+        random = new SplittableRandom(0);
+
+        population = new ArrayList<>(timetableGenerationService.generateInitialPopulation(problemIndex, random));
+        allocatingArena = new PopulationArena(problemIndex.getLessonsCount(), 0);
+
+        populationWithOffspring = new ArrayList<>(population);
+        populationWithOffspring.addAll(timetableGenerationService.evaluateOffspring(problemIndex,
+                timetableGenerationService.crossover(populationWithOffspring, random, allocatingArena),
+                allocatingArena));
+        populationWithOffspring.addAll(timetableGenerationService.evaluateOffspring(problemIndex,
+                timetableGenerationService.mutation(problemIndex, populationWithOffspring, random, allocatingArena),
+                allocatingArena));
+
+        evolvingPopulation = timetableGenerationService.generateInitialPopulation(problemIndex, random);
+        evolvingPopulationArena = timetableGenerationService.createPopulationArena(problemIndex);
+        evolvingFitnessCache = timetableGenerationService.createFitnessCache(evolvingPopulation);
+
+        worstLessonIndexes = new int[(int) Math.round(0.2 * problemIndex.getLessonsCount())];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public EvaluatedTimetable evaluateTimetable() {
+        return timetableEvaluationService.evaluateTimetable(problemIndex, population.get(0).getLessons());
+    }
+
+    @Benchmark
+    public List<EvaluatedTimetable> crossover() {
+        CrossoverResult crossoverResult = timetableGenerationService.crossover(population.get(0), population.get(1),
+                random, allocatingArena);
+        return timetableGenerationService.evaluateOffspring(problemIndex,
+                List.of(crossoverResult.child1(), crossoverResult.child2()), allocatingArena);
+    }
+
+    @Benchmark
+    public List<EvaluatedTimetable> mutation() {
+        return timetableGenerationService.evaluateOffspring(problemIndex,
+                timetableGenerationService.mutation(problemIndex, population, random, allocatingArena),
+                allocatingArena);
+    }
+
+    /**
+     * {@link #mutation()} with the evaluation stopped once the offspring are worse than the worst parent
+     */
+    @Benchmark
+    public List<EvaluatedTimetable> mutationWithCutoff() {
+        return timetableGenerationService.evaluateOffspring(problemIndex,
+                timetableGenerationService.mutation(problemIndex, population, random, allocatingArena),
+                population.get(population.size() - 1).getPenalty(), allocatingArena);
+    }
+
+    /**
+     * Baseline of {@link #selectWorstLessons()}: the boxed sort of all lessons the operators used before
+     */
+    @Benchmark
+    public Integer[] sortWorstLessons() {
+        double[] lessonPenalties = population.get(0).getLessonPenalties();
+
+        Integer[] lessonIndexes = new Integer[lessonPenalties.length];
+        for (int i = 0; i < lessonIndexes.length; ++i) {
+            lessonIndexes[i] = i;
+        }
+        Arrays.sort(lessonIndexes, (lessonIndex1, lessonIndex2) ->
+                Double.compare(lessonPenalties[lessonIndex2], lessonPenalties[lessonIndex1]));
+
+        return lessonIndexes;
+    }
+
+    /**
+     * Selection of the worst lessons mutated with the default mutation options
+     */
+    @Benchmark
+    public int[] selectWorstLessons() {
+        WorstLessonsSelector.selectWorstLessons(population.get(0).getLessonPenalties(), worstLessonIndexes.length,
+                worstLessonIndexes);
+        return worstLessonIndexes;
+    }
+
+    @Benchmark
+    public List<EvaluatedTimetable> selection() {
+        return timetableGenerationService.selection(new ArrayList<>(populationWithOffspring), allocatingArena);
+    }
+
+    @Benchmark
+    public List<EvaluatedTimetable> generation() {
+        evolvingPopulation = timetableGenerationService.generation(problemIndex, evolvingPopulation, random,
+                evolvingPopulationArena, evolvingFitnessCache);
+        return evolvingPopulation;
+    }
+}
@@ -0,0 +1,113 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
+import org.lnu.timetable.generation.model.SyntheticRequirementsParameters;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solve time and memory of the configured solver against the size of synthetic requirements. The requirements keep
+ * the shape of {@link SyntheticRequirementsParameters} defaults scaled by the streams count, 1200 streams give about
+ * 60 000 lessons. The {@code lessonsCount} and {@code peakHeapMegabytes} counters give the size and the heap peak of
+ * every solve of 20 generations, {@code -Dbenchmark.args="TimetableScalingBenchmark -rf csv -rff scaling.csv"} saves
+ * the points to plot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dgeneration.seed=0", "-Diterations.max-count=20"})
+public class TimetableScalingBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SolverResult {
+        public double lessonsCount;
+        public double peakHeapMegabytes;
+    }
+
+    @Param({"75", "150", "300", "600", "1200"})
+    public int streamsCount;
+
+    private AnnotationConfigApplicationContext context;
+
+    private TimetableSolverService timetableSolverService;
+    private CompactTimetableRequirements timetableRequirements;
+    private int lessonsCount;
+
+    private List<MemoryPoolMXBean> heapMemoryPools;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+
+        timetableSolverService = context.getBean(TimetableSolverService.class);
+
+        SyntheticRequirementsParameters parameters = SyntheticRequirementsParameters.builder()
+                .streamsCount(streamsCount)
+                .lecturersCount(streamsCount * 10 / 3)
+                .placesCount(streamsCount * 5 / 3)
+                .parallel(true)
+                .build();
+
+        Path requirementsFile = Files.createTempFile("synthetic-requirements", ".json");
+        try {
+            context.getBean(TimetableRequirementsGenerationService.class)
+                    .generateAndSaveSyntheticTimetableRequirements(requirementsFile, parameters, 0);
+            timetableRequirements = context.getBean(TimetableGenerationDemo.class)
+                    .readCompactTimetableRequirements(requirementsFile);
+        } finally {
+            Files.delete(requirementsFile);
+        }
+        lessonsCount = context.getBean(ProblemIndexService.class).createProblemIndex(timetableRequirements)
+                .getLessonsCount();
+
+        heapMemoryPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        System.gc();
+        heapMemoryPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @Benchmark
+    public void generateTimetable(SolverResult result) {
+        timetableSolverService.generateTimetable(timetableRequirements, new SolverControl(null));
+
+        result.lessonsCount = lessonsCount;
+        result.peakHeapMegabytes = heapMemoryPools.stream()
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum() / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,98 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.PopulationSeeding;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.model.TimetableRequirementsExample;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random against constructive seeding of the population. Every invocation seeds a population and evolves it for a
+ * fixed number of generations, the {@code initialPenalty} and {@code finalPenalty} counters give the best penalty
+ * before and after the evolution. The bundled examples overload the academic groups, so the time slot conflicts,
+ * which make up most of the penalty, cannot be removed completely.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TimetableSeedingBenchmark {
+    private static final int GENERATIONS_COUNT = 500;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SeedingResult {
+        public double initialPenalty;
+        public double finalPenalty;
+    }
+
+    @Param({"Example3.json", "Example4.json"})
+    public String exampleFileName;
+
+    @Param({"RANDOM", "CONSTRUCTIVE"})
+    public PopulationSeeding seeding;
+
+    private AnnotationConfigApplicationContext context;
+
+    private TimetableGenerationService timetableGenerationService;
+
+    private ProblemIndex problemIndex;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+
+        timetableGenerationService = context.getBean(TimetableGenerationService.class);
+
+        TimetableRequirementsExample example = context.getBean(TimetableRequirementsGenerationService.class)
+                .readExampleTimetableRequirementsExample(exampleFileName);
+        TimetableRequirements timetableRequirements = context.getBean(TimetableGenerationDemo.class)
+                .createTimetableRequirements(example);
+
+        problemIndex = context.getBean(ProblemIndexService.class).createProblemIndex(timetableRequirements);
+        random = new SplittableRandom(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<EvaluatedTimetable> seedAndEvolve(SeedingResult result) {
+        List<EvaluatedTimetable> population = timetableGenerationService.generateInitialPopulation(problemIndex,
+                random, seeding);
+        result.initialPenalty = population.get(0).getPenalty();
+
+        PopulationArena arena = timetableGenerationService.createPopulationArena(problemIndex);
+        FitnessCache fitnessCache = timetableGenerationService.createFitnessCache(population);
+        for (int i = 0; i < GENERATIONS_COUNT && population.get(0).getPenalty() > 0; ++i) {
+            population = timetableGenerationService.generation(problemIndex, population, random, arena, fitnessCache);
+        }
+        result.finalPenalty = population.get(0).getPenalty();
+
+        return population;
+    }
+}
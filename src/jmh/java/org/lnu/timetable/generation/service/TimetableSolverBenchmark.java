@@ -0,0 +1,75 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.SolverType;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.model.TimetableRequirementsExample;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and final penalty of every solver on the bundled examples. Every solver runs its configured number of
+ * iterations from the same seed, the {@code penalty} counter reports the penalty of the returned timetable. Iteration
+ * limits are overridden as system properties, e.g. {@code -Dbenchmark.args="TimetableSolverBenchmark -jvmArgsAppend
+ * -Diterations.max-count=500"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TimetableSolverBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SolverResult {
+        public double penalty;
+    }
+
+    @Param({"Example1.json", "Example2.json", "Example3.json", "Example4.json"})
+    public String exampleFileName;
+
+    @Param({"GENETIC", "TABU_SEARCH", "SIMULATED_ANNEALING", "HYBRID"})
+    public SolverType solverType;
+
+    private AnnotationConfigApplicationContext context;
+
+    private TimetableSolverService timetableSolverService;
+    private TimetableRequirements timetableRequirements;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+
+        timetableSolverService = context.getBean(TimetableSolverService.class);
+
+        TimetableRequirementsExample example = context.getBean(TimetableRequirementsGenerationService.class)
+                .readExampleTimetableRequirementsExample(exampleFileName);
+        timetableRequirements = context.getBean(TimetableGenerationDemo.class).createTimetableRequirements(example);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void generateTimetable(SolverResult result) {
+        result.penalty = timetableSolverService.generateTimetable(timetableRequirements, solverType, 0).getPenalty();
+    }
+}
@@ -1,6 +1,8 @@
 package org.lnu.timetable.generation;
 
 import lombok.AllArgsConstructor;
+import org.lnu.timetable.generation.service.TimetableBatchService;
+import org.lnu.timetable.generation.service.TimetableFileConverter;
 import org.lnu.timetable.generation.service.TimetableGenerationDemo;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -12,12 +14,26 @@ public class TimetableGenerationApp implements CommandLineRunner {
 
     private final TimetableGenerationDemo timetableGenerationDemo;
 
+    private final TimetableBatchService timetableBatchService;
+
+    private final TimetableFileConverter timetableFileConverter;
+
     public static void main(String[] args) {
         SpringApplication.run(TimetableGenerationApp.class, args);
     }
 
     @Override
     public void run(String... args) {
+        if (timetableFileConverter.isConversionConfigured()) {
+            timetableFileConverter.convert();
+            return;
+        }
+
+        if (timetableBatchService.isBatchConfigured()) {
+            System.out.println(timetableBatchService.solveBatch());
+            return;
+        }
+
 //        timetableGenerationDemo.generateTimetableRequirementsExample1();
 //        timetableGenerationDemo.generateTimetableRequirementsExample2();
 //        timetableGenerationDemo.generateTimetableRequirementsExample3();
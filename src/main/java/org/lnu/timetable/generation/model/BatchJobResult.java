@@ -0,0 +1,34 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.Data;
+
+/**
+ * Outcome of the generation of a single timetable of a batch, written as soon as the job finishes
+ */
+@Data
+public class BatchJobResult {
+    private final String requirementsFile;
+
+    /**
+     * File of the generated lessons, {@code null} when the job failed
+     */
+    private final String timetableFile;
+
+    /**
+     * Penalty of the generated timetable, {@code null} when the job failed
+     */
+    private final Double penalty;
+    private final int lessonsCount;
+    private final long solveMillis;
+
+    /**
+     * Seed the timetable can be generated again with, {@code null} when the job failed
+     */
+    private final Long seed;
+    private final int iterationsCount;
+
+    /**
+     * Message of the failure, {@code null} when the job succeeded
+     */
+    private final String error;
+}
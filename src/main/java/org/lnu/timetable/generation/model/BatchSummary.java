@@ -0,0 +1,16 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.Data;
+
+/**
+ * Totals of a batch. The sum of the solving times over the wall-clock time shows how well the jobs were parallelized.
+ */
+@Data
+public class BatchSummary {
+    private final int jobsCount;
+    private final int failedJobsCount;
+    private final int workersCount;
+
+    private final long wallClockMillis;
+    private final long solveMillis;
+}
@@ -0,0 +1,30 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Timetable requirements in primitive arrays with one item per lesson requirements, so that large inputs are kept
+ * without a {@link LessonRequirements} and a set of academic groups per requirements. Academic groups of every
+ * requirements are distinct, in the ascending order and stored in the compressed sparse row form like in
+ * {@link ProblemIndex}.
+ */
+@Data
+@AllArgsConstructor
+public class CompactTimetableRequirements {
+    private final int lecturersCount;
+    private final int academicGroupsCount;
+    private final int placesCount;
+    private final List<LessonTimeSlot> timeSlots;
+
+    private final int[] lecturerIndexes;
+    private final int[] academicGroupOffsets;
+    private final int[] academicGroupIndexes;
+    private final double[] lessonsCountsPerWeek;
+
+    public int getRequirementsCount() {
+        return lecturerIndexes.length;
+    }
+}
@@ -2,27 +2,21 @@ package org.lnu.timetable.generation.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.lnu.timetable.generation.util.ZobristHash;
 
-import java.util.Map;
-import java.util.Set;
-
+/**
+ * A timetable with its penalty. Lessons are packed with {@link org.lnu.timetable.generation.util.LessonCodec}, equal
+ * timetables have equal {@link ZobristHash Zobrist hashes}.
+ */
 @Data
 @AllArgsConstructor
 public class EvaluatedTimetable {
-    private final Lesson[] lessons;
+    private final long[] lessons;
     private final double penalty;
     private final double[] lessonPenalties;
-    private final Map<Integer, Set<Integer>> lecturerLessonsMap;
-    private final Map<Integer, Set<Integer>> academicGroupLessonsMap;
-    private final Map<Integer, Set<Integer>> placeLessonsMap;
-
-    public EvaluatedTimetable(Lesson[] lessons, double penalty, double[] lessonPenalties) {
-        this.lessons = lessons;
-        this.penalty = penalty;
-        this.lessonPenalties = lessonPenalties;
+    private final long hash;
 
-        lecturerLessonsMap = null;
-        academicGroupLessonsMap = null;
-        placeLessonsMap = null;
+    public EvaluatedTimetable(long[] lessons, double penalty, double[] lessonPenalties) {
+        this(lessons, penalty, lessonPenalties, ZobristHash.hash(lessons));
     }
 }
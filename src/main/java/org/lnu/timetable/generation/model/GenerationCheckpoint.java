@@ -0,0 +1,27 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * State of a genetic algorithm run between two epochs: the iteration counters and the population, random seed,
+ * generation and fitness cache of every island. Resuming from it continues the same trajectory as the uninterrupted run.
+ */
+@Data
+@AllArgsConstructor
+public class GenerationCheckpoint {
+    private final int iteration;
+    private final int improvementIteration;
+
+    private final long[] islandRandomSeeds;
+    private final int[] islandGenerations;
+    private final List<List<EvaluatedTimetable>> islandPopulations;
+
+    /**
+     * Hashes and penalties of the cached timetables of every island, the least recently used first
+     */
+    private final long[][] islandCachedHashes;
+    private final double[][] islandCachedPenalties;
+}
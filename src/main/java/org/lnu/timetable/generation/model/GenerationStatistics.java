@@ -0,0 +1,38 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.Data;
+
+/**
+ * Convergence and timing data of a single generation of an island. Penalties and diversity describe the population
+ * that survived the selection, diversity being the average share of lessons that differ from the best timetable.
+ */
+@Data
+public class GenerationStatistics {
+    private final int islandIndex;
+    private final int generation;
+
+    private final double bestPenalty;
+    private final double meanPenalty;
+    private final double worstPenalty;
+    private final double diversity;
+
+    private final long crossoverNanos;
+    private final long mutationNanos;
+    private final long repairNanos;
+    private final long evaluationNanos;
+    private final long selectionNanos;
+
+    private final int evaluationsCount;
+
+    /**
+     * Evaluations stopped once the penalty of the offspring exceeded the worst distinct parent
+     */
+    private final int rejectionsCount;
+
+    /**
+     * Offspring dropped without evaluation as duplicates of the population or of the cached timetables
+     */
+    private final int duplicatesCount;
+    private final double evaluationsPerSecond;
+    private final long allocatedBytes;
+}
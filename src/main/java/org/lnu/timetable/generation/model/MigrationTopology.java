@@ -0,0 +1,6 @@
+package org.lnu.timetable.generation.model;
+
+public enum MigrationTopology {
+    RING,
+    FULLY_CONNECTED
+}
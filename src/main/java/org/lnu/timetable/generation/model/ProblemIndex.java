@@ -0,0 +1,59 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Lookup tables compiled once per {@link TimetableRequirements} and shared by all evaluations of a run. Time slots are
+ * referenced by their indexes in {@link #getTimeSlots()}.
+ *
+ * <p>Lessons are laid out by requirements: every requirements get {@code ceil(lessonsCountPerWeek)} consecutive
+ * lessons, the last of them is biweekly when the count is fractional. Lists of indexes are stored in the compressed
+ * sparse row form: the items of row {@code i} are {@code items[offsets[i]]} to {@code items[offsets[i + 1] - 1]}.
+ */
+@Data
+@Builder(toBuilder = true)
+public class ProblemIndex {
+    public static final long NOT_PUBLISHED = -1;
+
+    private final List<LessonTimeSlot> timeSlots;
+    private final int requirementsCount;
+
+    private final int timeSlotsCount;
+    private final int placesCount;
+    private final int lecturersCount;
+    private final int academicGroupsCount;
+
+    /**
+     * Position of every time slot when the time slots are sorted by their start and end time
+     */
+    private final int[] timeSlotOrders;
+    private final boolean[][] timeSlotConflicts;
+    private final boolean[][] timeSlotWindows;
+
+    private final int[] lessonRequirementsIndexes;
+    private final boolean[] biweeklyLessons;
+    private final int[] lessonLecturers;
+    private final int[] lessonAcademicGroupOffsets;
+    private final int[] lessonAcademicGroups;
+
+    /**
+     * Lessons of every lecturer and academic group in the ascending order
+     */
+    private final int[] lecturerLessonOffsets;
+    private final int[] lecturerLessons;
+    private final int[] academicGroupLessonOffsets;
+    private final int[] academicGroupLessons;
+
+    /**
+     * Lessons of the published timetable a re-solve starts from, {@link #NOT_PUBLISHED} for the lessons to reschedule,
+     * {@code null} for a generation from scratch. Moving a published lesson is penalized.
+     */
+    private final long[] publishedLessons;
+
+    public int getLessonsCount() {
+        return lessonRequirementsIndexes.length;
+    }
+}
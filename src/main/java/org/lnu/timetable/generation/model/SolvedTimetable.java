@@ -0,0 +1,16 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * An evaluated timetable with the time slots its lessons refer to, so that it can be stored and decoded on its own
+ */
+@Data
+@AllArgsConstructor
+public class SolvedTimetable {
+    private final List<LessonTimeSlot> timeSlots;
+    private final EvaluatedTimetable timetable;
+}
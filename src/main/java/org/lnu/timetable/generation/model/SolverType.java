@@ -0,0 +1,8 @@
+package org.lnu.timetable.generation.model;
+
+public enum SolverType {
+    GENETIC,
+    TABU_SEARCH,
+    SIMULATED_ANNEALING,
+    HYBRID
+}
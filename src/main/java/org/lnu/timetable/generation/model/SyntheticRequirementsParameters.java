@@ -0,0 +1,52 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Shape of generated university-scale requirements. Academic groups are organized in streams that attend the lectures
+ * of their courses together and the seminars group by group. The chances of the lecturers to get a lecture or a
+ * seminar decrease geometrically from the busiest lecturer to the least busy one.
+ *
+ * <p>The defaults give about 60 000 lessons, which take about three quarters of the week of the places, the lecturers
+ * and the academic groups.
+ */
+@Data
+@Builder
+public class SyntheticRequirementsParameters {
+    @Builder.Default
+    private final int streamsCount = 1200;
+
+    @Builder.Default
+    private final int minGroupsPerStream = 2;
+
+    @Builder.Default
+    private final int maxGroupsPerStream = 6;
+
+    @Builder.Default
+    private final int coursesPerStream = 8;
+
+    /**
+     * Probability that two neighbouring groups of a stream attend the seminars of a course together
+     */
+    @Builder.Default
+    private final double sharedSeminarRate = 0.2;
+
+    @Builder.Default
+    private final int lecturersCount = 4000;
+
+    /**
+     * Expected load of the busiest lecturer relative to the least busy one, 1 for the uniform load
+     */
+    @Builder.Default
+    private final double lecturerLoadRatio = 4;
+
+    @Builder.Default
+    private final int placesCount = 2000;
+
+    /**
+     * Generates the streams in parallel, the requirements are the same as of the sequential generation
+     */
+    @Builder.Default
+    private final boolean parallel = false;
+}
@@ -0,0 +1,24 @@
+package org.lnu.timetable.generation.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Links changed timetable requirements to the previous ones, so that a published timetable of the previous
+ * requirements can seed the generation. Lessons of the changed, removed or added requirements and of the closed places
+ * are rescheduled, the other lessons keep their places in the published timetable unless moving them pays off.
+ */
+@Data
+@AllArgsConstructor
+public class TimetableRequirementsChange {
+    /**
+     * Index of every previous lesson requirements among the changed ones, -1 for the removed or changed requirements
+     */
+    private final int[] requirementsIndexes;
+
+    /**
+     * Index of every previous place among the changed ones, -1 for the closed places, {@code null} when the places
+     * did not change
+     */
+    private final int[] placeIndexes;
+}
@@ -0,0 +1,57 @@
+package org.lnu.timetable.generation.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Penalties of the timetables evaluated by an island by their Zobrist hashes, the least recently used ones are evicted
+ * beyond the capacity. The disabled cache keeps nothing.
+ */
+class FitnessCache {
+    static final FitnessCache DISABLED = new FitnessCache(0);
+
+    private final int capacity;
+    private final Map<Long, Double> penalties;
+
+    FitnessCache(int capacity) {
+        this.capacity = capacity;
+
+        penalties = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+                return size() > FitnessCache.this.capacity;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * @return penalty of the timetable with the given hash, {@code null} when it is not cached
+     */
+    Double getPenalty(long hash) {
+        return penalties.get(hash);
+    }
+
+    void putPenalty(long hash, double penalty) {
+        if (isEnabled()) {
+            penalties.put(hash, penalty);
+        }
+    }
+
+    /**
+     * @return hashes of the cached timetables, the least recently used first
+     */
+    long[] getHashes() {
+        return penalties.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * @return penalties of the cached timetables in the order of {@link #getHashes()}
+     */
+    double[] getPenalties() {
+        return penalties.values().stream().mapToDouble(Double::doubleValue).toArray();
+    }
+}
@@ -0,0 +1,75 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.GenerationCheckpoint;
+import org.lnu.timetable.generation.util.TimetableBinaryFormat;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes checkpoints of a run in a background thread, so that the generations are not stalled by the disk. A checkpoint
+ * is skipped while the previous one is still being written, closing waits for the last one. A failed write fails the
+ * next write or the closing, so that a run does not go on without the checkpoints it is expected to leave.
+ */
+class GenerationCheckpointWriter implements AutoCloseable {
+    private final Path pathToFile;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    private Future<?> pendingWrite;
+
+    GenerationCheckpointWriter(Path pathToFile) {
+        this.pathToFile = pathToFile;
+    }
+
+    /**
+     * @param checkpoint state that is not changed by the run anymore
+     */
+    void write(GenerationCheckpoint checkpoint) {
+        if (pendingWrite != null) {
+            if (!pendingWrite.isDone()) {
+                return;
+            }
+            checkPendingWrite();
+        }
+        pendingWrite = executorService.submit(() -> TimetableBinaryFormat.writeCheckpoint(pathToFile, checkpoint));
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                executorService.shutdownNow();
+                throw new RuntimeException("Checkpoint " + pathToFile + " is not written within a minute");
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (pendingWrite != null) {
+            checkPendingWrite();
+        }
+    }
+
+    /**
+     * Rethrows the failure of the finished write, a write is checked only once
+     */
+    private void checkPendingWrite() {
+        Future<?> finishedWrite = pendingWrite;
+        pendingWrite = null;
+        try {
+            finishedWrite.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Checkpoint " + pathToFile + " is not written", e.getCause());
+        }
+    }
+}
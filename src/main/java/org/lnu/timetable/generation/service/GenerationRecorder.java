@@ -0,0 +1,143 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.GenerationStatistics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the timing and allocation data of a single generation. The disabled recorder measures nothing, so that
+ * a run without generation listeners only pays for a few field reads.
+ */
+class GenerationRecorder {
+    static final GenerationRecorder DISABLED = new GenerationRecorder(false);
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    enum Phase {
+        CROSSOVER,
+        MUTATION,
+        REPAIR,
+        EVALUATION,
+        SELECTION
+    }
+
+    private final boolean isEnabled;
+
+    private final long startNanos;
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private long phaseStartNanos;
+    private long phaseStartAllocatedBytes;
+    private long allocatedBytes;
+
+    // Offspring are evaluated by the evaluation pool threads
+    private final LongAdder evaluationsCount = new LongAdder();
+    private final LongAdder evaluationAllocatedBytes = new LongAdder();
+    private final LongAdder rejectionsCount = new LongAdder();
+
+    private int duplicatesCount;
+
+    GenerationRecorder() {
+        this(true);
+    }
+
+    private GenerationRecorder(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+        startNanos = isEnabled ? System.nanoTime() : 0;
+    }
+
+    boolean isEnabled() {
+        return isEnabled;
+    }
+
+    void startPhase() {
+        if (isEnabled) {
+            phaseStartNanos = System.nanoTime();
+            phaseStartAllocatedBytes = getCurrentThreadAllocatedBytes();
+        }
+    }
+
+    /**
+     * Ends the phase started last in the calling thread. Allocations of the evaluation phase are recorded per
+     * evaluated timetable instead, as they happen in other threads.
+     */
+    void endPhase(Phase phase) {
+        if (isEnabled) {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStartNanos;
+
+            if (phase != Phase.EVALUATION) {
+                allocatedBytes += getCurrentThreadAllocatedBytes() - phaseStartAllocatedBytes;
+            }
+        }
+    }
+
+    void recordEvaluation(long allocatedBytes) {
+        if (isEnabled) {
+            evaluationsCount.increment();
+            evaluationAllocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    void recordRejection() {
+        if (isEnabled) {
+            rejectionsCount.increment();
+        }
+    }
+
+    void recordDuplicate() {
+        if (isEnabled) {
+            ++duplicatesCount;
+        }
+    }
+
+    GenerationStatistics createStatistics(int islandIndex, int generation, List<EvaluatedTimetable> population) {
+        double bestPenalty = population.get(0).getPenalty();
+        double worstPenalty = population.get(population.size() - 1).getPenalty();
+
+        long[] bestLessons = population.get(0).getLessons();
+        double penaltySum = 0;
+        double diversitySum = 0;
+        for (EvaluatedTimetable timetable : population) {
+            penaltySum += timetable.getPenalty();
+
+            long[] lessons = timetable.getLessons();
+            int differentLessonsCount = 0;
+            for (int i = 0; i < lessons.length; ++i) {
+                if (lessons[i] != bestLessons[i]) {
+                    ++differentLessonsCount;
+                }
+            }
+            diversitySum += (double) differentLessonsCount / lessons.length;
+        }
+
+        long totalNanos = System.nanoTime() - startNanos;
+        int evaluations = evaluationsCount.intValue();
+
+        return new GenerationStatistics(
+                islandIndex,
+                generation,
+                bestPenalty,
+                penaltySum / population.size(),
+                worstPenalty,
+                diversitySum / population.size(),
+                phaseNanos[Phase.CROSSOVER.ordinal()],
+                phaseNanos[Phase.MUTATION.ordinal()],
+                phaseNanos[Phase.REPAIR.ordinal()],
+                phaseNanos[Phase.EVALUATION.ordinal()],
+                phaseNanos[Phase.SELECTION.ordinal()],
+                evaluations,
+                rejectionsCount.intValue(),
+                duplicatesCount,
+                totalNanos > 0 ? evaluations * 1e9 / totalNanos : 0,
+                allocatedBytes + evaluationAllocatedBytes.sum()
+        );
+    }
+
+    static long getCurrentThreadAllocatedBytes() {
+        return THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,67 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.SolverType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Staged pipeline: the genetic algorithm explores until its best penalty stagnates, then a local search refines the
+ * best timetable for the rest of the time budget
+ */
+@Service
+public class HybridTimetableSolver implements TimetableSolver {
+    private final TimetableGenerationService timetableGenerationService;
+    private final LocalSearchTimetableSolver localSearchSolver;
+
+    private final int stagnationGenerations;
+
+    public HybridTimetableSolver(
+            TimetableGenerationService timetableGenerationService,
+            TabuSearchTimetableSolver tabuSearchSolver,
+            SimulatedAnnealingTimetableSolver simulatedAnnealingSolver,
+
+            @Value("${hybrid.local-search.type}") SolverType localSearchType,
+            @Value("${hybrid.stagnation-window}") int stagnationGenerations
+    ) {
+        this.timetableGenerationService = timetableGenerationService;
+
+        this.localSearchSolver = switch (localSearchType) {
+            case TABU_SEARCH -> tabuSearchSolver;
+            case SIMULATED_ANNEALING -> simulatedAnnealingSolver;
+            default -> throw new RuntimeException("Not a local search: " + localSearchType);
+        };
+
+        this.stagnationGenerations = stagnationGenerations;
+    }
+
+    @Override
+    public SolverType getSolverType() {
+        return SolverType.HYBRID;
+    }
+
+    @Override
+    public EvaluatedTimetable generateTimetable(ProblemIndex problemIndex, long seed, SolverControl control) {
+        control.recordSeed(seed);
+
+        SplittableRandom random = new SplittableRandom(seed);
+
+        EvaluatedTimetable timetable = timetableGenerationService.generateTimetable(problemIndex, random.nextLong(),
+                control, stagnationGenerations);
+
+        if (timetable.getPenalty() == 0 || control.isStopped()) {
+            return timetable;
+        }
+
+        // The iterations of the local search are counted after the generations
+        int generationsCount = control.getIterationsCount();
+        EvaluatedTimetable refinedTimetable = localSearchSolver.improveTimetable(problemIndex,
+                timetable.getLessons().clone(), random, control);
+        control.recordIterationsCount(generationsCount + control.getIterationsCount());
+
+        return refinedTimetable.getPenalty() < timetable.getPenalty() ? refinedTimetable : timetable;
+    }
+}
@@ -0,0 +1,88 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.RandomTimetableUtil;
+
+import java.util.SplittableRandom;
+
+/**
+ * A reusable move of the local search: a lesson moved to another day, time slot, place or periodicity, or two lessons
+ * swapping their days, time slots and places
+ */
+class LocalSearchMove {
+    private static final int DAY_MOVE = 0;
+    private static final int TIME_SLOT_MOVE = 1;
+    private static final int PLACE_MOVE = 2;
+    private static final int PERIODICITY_MOVE = 3;
+    private static final int MOVES_COUNT = 5;
+
+    private int lessonIndex1;
+    private int lessonIndex2;
+    private long movedLesson;
+
+    /**
+     * Picks a random move of the timetable, every kind of moves being equally likely
+     */
+    void randomize(ProblemIndex problemIndex, long[] lessons, SplittableRandom random) {
+        lessonIndex1 = random.nextInt(lessons.length);
+        lessonIndex2 = -1;
+
+        long lesson = lessons[lessonIndex1];
+        int moveKind = random.nextInt(MOVES_COUNT);
+
+        // Weekly lessons have no other periodicity, so they move to another day instead
+        if (moveKind == PERIODICITY_MOVE && !problemIndex.getBiweeklyLessons()[lessonIndex1]) {
+            moveKind = DAY_MOVE;
+        }
+
+        switch (moveKind) {
+            case DAY_MOVE -> movedLesson = LessonCodec.withDay(lesson, RandomTimetableUtil.getRandomDay(random));
+            case TIME_SLOT_MOVE -> movedLesson = LessonCodec.withTimeSlotIndex(lesson,
+                    RandomTimetableUtil.getRandomTimeSlot(random, problemIndex));
+            case PLACE_MOVE -> movedLesson = LessonCodec.withPlaceIndex(lesson,
+                    RandomTimetableUtil.getRandomPlace(random, problemIndex));
+            case PERIODICITY_MOVE -> movedLesson = LessonCodec.withPeriodicity(lesson,
+                    LessonCodec.getPeriodicity(lesson) == LessonCodec.NUMERATOR ? LessonCodec.DENOMINATOR : LessonCodec.NUMERATOR);
+            default -> lessonIndex2 = random.nextInt(lessons.length);
+        }
+    }
+
+    void copy(LocalSearchMove move) {
+        lessonIndex1 = move.lessonIndex1;
+        lessonIndex2 = move.lessonIndex2;
+        movedLesson = move.movedLesson;
+    }
+
+    double calcPenaltyDelta(ResourceOccupancy occupancy) {
+        return isSwap()
+                ? occupancy.calcSwapPenaltyDelta(lessonIndex1, lessonIndex2)
+                : occupancy.calcMovePenaltyDelta(lessonIndex1, movedLesson);
+    }
+
+    void apply(ResourceOccupancy occupancy) {
+        if (isSwap()) {
+            occupancy.swapLessons(lessonIndex1, lessonIndex2);
+        } else {
+            occupancy.moveLesson(lessonIndex1, movedLesson);
+        }
+    }
+
+    /**
+     * Checks whether any lesson of the move is tabu: the tabu iteration of a lesson is the first one it may move again
+     */
+    boolean isTabu(int[] tabuIterations, int iteration) {
+        return tabuIterations[lessonIndex1] > iteration || isSwap() && tabuIterations[lessonIndex2] > iteration;
+    }
+
+    void setTabu(int[] tabuIterations, int tabuIteration) {
+        tabuIterations[lessonIndex1] = tabuIteration;
+        if (isSwap()) {
+            tabuIterations[lessonIndex2] = tabuIteration;
+        }
+    }
+
+    private boolean isSwap() {
+        return lessonIndex2 != -1;
+    }
+}
@@ -0,0 +1,58 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.util.RandomTimetableUtil;
+
+import java.util.SplittableRandom;
+
+/**
+ * A single-solution solver improving a random timetable with {@link LocalSearchMove}s scored incrementally by
+ * {@link ResourceOccupancy}
+ */
+abstract class LocalSearchTimetableSolver implements TimetableSolver {
+    protected final TimetableEvaluationService timetableEvaluationService;
+
+    protected LocalSearchTimetableSolver(TimetableEvaluationService timetableEvaluationService) {
+        this.timetableEvaluationService = timetableEvaluationService;
+    }
+
+    @Override
+    public EvaluatedTimetable generateTimetable(ProblemIndex problemIndex, long seed, SolverControl control) {
+        control.recordSeed(seed);
+
+        SplittableRandom random = new SplittableRandom(seed);
+
+        long[] lessons = RandomTimetableUtil.generateTimetable(problemIndex, random);
+
+        return improveTimetable(problemIndex, lessons, random, control);
+    }
+
+    /**
+     * Searches for a better timetable starting from the given lessons, which are changed in place
+     */
+    EvaluatedTimetable improveTimetable(ProblemIndex problemIndex, long[] lessons, SplittableRandom random,
+                                        SolverControl control) {
+        ResourceOccupancy occupancy = timetableEvaluationService.createResourceOccupancy(problemIndex, lessons);
+        long[] bestLessons = search(problemIndex, occupancy, lessons, random, control);
+
+        return timetableEvaluationService.evaluateTimetable(problemIndex, bestLessons);
+    }
+
+    /**
+     * Moves the lessons tracked by the occupancy until the iterations run out or the control stops the search and
+     * returns the best lessons found
+     */
+    protected abstract long[] search(ProblemIndex problemIndex, ResourceOccupancy occupancy, long[] lessons,
+                                     SplittableRandom random, SolverControl control);
+
+    /**
+     * Publishes a copy of the best lessons, which the search keeps changing, when a snapshot is due
+     */
+    protected void publishSnapshot(ProblemIndex problemIndex, long[] bestLessons, double bestPenalty,
+                                   SolverControl control) {
+        if (control.isSnapshotDue(bestPenalty)) {
+            control.publishSnapshot(timetableEvaluationService.evaluateTimetable(problemIndex, bestLessons.clone()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.lnu.timetable.generation.service;
+
+import java.util.Arrays;
+
+/**
+ * Set of longs with open addressing and linear probing, so that the hashes of a generation are kept without boxing.
+ * The set is cleared and reused by the following generations, it grows when it becomes half full.
+ */
+class LongHashSet {
+    private long[] keys;
+    private int size;
+
+    /**
+     * Zero marks the free slots, so it is kept aside
+     */
+    private boolean containsZero;
+
+    /**
+     * @param expectedSize number of the keys the set takes without growing
+     */
+    LongHashSet(int expectedSize) {
+        keys = new long[Integer.highestOneBit(Math.max(expectedSize, 1)) << 2];
+    }
+
+    /**
+     * @return whether the key was not in the set
+     */
+    boolean add(long key) {
+        if (key == 0) {
+            boolean isAdded = !containsZero;
+            containsZero = true;
+            return isAdded;
+        }
+
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                if (++size > keys.length >>> 1) {
+                    grow();
+                }
+                return true;
+            }
+        }
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+        containsZero = false;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length << 1];
+
+        int mask = keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * Zobrist hashes are uniform already, the high bits are folded in for the other keys
+     */
+    private static int mix(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,124 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Lesson and lesson penalty buffers of the timetables of an island. The selection returns the buffers of the losing
+ * timetables, and the offspring of the next generations take them back, so that after the first generation an island
+ * evolves without allocating timetable buffers. Buffers beyond the capacity are left to the garbage collector.
+ *
+ * <p>A timetable of the arena must not be referenced after its buffers are returned, so the timetables leaving the
+ * island are copied. The offspring are evaluated in parallel, so the buffers are taken and returned under a lock.
+ *
+ * <p>The arena also keeps the scratch of the crossover, mutation and selection, which run one after another in the
+ * thread evolving the island.
+ */
+class PopulationArena {
+    private final int lessonsCount;
+    private final int capacity;
+
+    private final ArrayDeque<long[]> lessonsBuffers;
+    private final ArrayDeque<double[]> lessonPenaltiesBuffers;
+
+    /**
+     * Marks of the lessons, every user leaves them unmarked
+     */
+    private final boolean[] lessonMarkers;
+    private final int[] worstLessonIndexes;
+    private final int[] changedLessonIndexes;
+
+    /**
+     * Hashes of the timetables of a generation, every user clears them first
+     */
+    private final LongHashSet hashes;
+
+    /**
+     * @param capacity maximal number of the timetables of a population with its offspring
+     */
+    PopulationArena(int lessonsCount, int capacity) {
+        this.lessonsCount = lessonsCount;
+        this.capacity = capacity;
+
+        lessonsBuffers = new ArrayDeque<>(capacity);
+        lessonPenaltiesBuffers = new ArrayDeque<>(capacity);
+
+        lessonMarkers = new boolean[lessonsCount];
+        worstLessonIndexes = new int[lessonsCount];
+        changedLessonIndexes = new int[lessonsCount];
+        hashes = new LongHashSet(capacity);
+    }
+
+    boolean[] getLessonMarkers() {
+        return lessonMarkers;
+    }
+
+    /**
+     * @return buffer of a lesson for every lesson of the timetable
+     */
+    int[] getWorstLessonIndexes() {
+        return worstLessonIndexes;
+    }
+
+    /**
+     * @return buffer of a lesson for every lesson of the timetable
+     */
+    int[] getChangedLessonIndexes() {
+        return changedLessonIndexes;
+    }
+
+    LongHashSet getHashes() {
+        return hashes;
+    }
+
+    /**
+     * @return buffer with arbitrary lessons
+     */
+    synchronized long[] takeLessons() {
+        long[] lessons = lessonsBuffers.pollLast();
+        return lessons != null ? lessons : new long[lessonsCount];
+    }
+
+    long[] copyLessons(long[] lessons) {
+        long[] copy = takeLessons();
+        System.arraycopy(lessons, 0, copy, 0, lessonsCount);
+        return copy;
+    }
+
+    /**
+     * @return buffer with arbitrary lesson penalties
+     */
+    synchronized double[] takeLessonPenalties() {
+        double[] lessonPenalties = lessonPenaltiesBuffers.pollLast();
+        return lessonPenalties != null ? lessonPenalties : new double[lessonsCount];
+    }
+
+    /**
+     * Copies a timetable of another island or arena into the buffers of this arena
+     */
+    EvaluatedTimetable copyTimetable(EvaluatedTimetable timetable) {
+        double[] lessonPenalties = takeLessonPenalties();
+        System.arraycopy(timetable.getLessonPenalties(), 0, lessonPenalties, 0, lessonsCount);
+
+        return new EvaluatedTimetable(copyLessons(timetable.getLessons()), timetable.getPenalty(), lessonPenalties,
+                timetable.getHash());
+    }
+
+    synchronized void releaseLessons(long[] lessons) {
+        if (lessonsBuffers.size() < capacity) {
+            lessonsBuffers.addLast(lessons);
+        }
+    }
+
+    synchronized void releaseLessonPenalties(double[] lessonPenalties) {
+        if (lessonPenaltiesBuffers.size() < capacity) {
+            lessonPenaltiesBuffers.addLast(lessonPenalties);
+        }
+    }
+
+    synchronized void releaseTimetable(EvaluatedTimetable timetable) {
+        releaseLessons(timetable.getLessons());
+        releaseLessonPenalties(timetable.getLessonPenalties());
+    }
+}
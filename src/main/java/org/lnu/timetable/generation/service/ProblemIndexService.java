@@ -0,0 +1,287 @@
+package org.lnu.timetable.generation.service;
+
+import lombok.AllArgsConstructor;
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
+import org.lnu.timetable.generation.model.Lesson;
+import org.lnu.timetable.generation.model.LessonPeriodicity;
+import org.lnu.timetable.generation.model.LessonRequirements;
+import org.lnu.timetable.generation.model.LessonTimeSlot;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.model.TimetableRequirementsChange;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.LessonTimeSlotUtil;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+@AllArgsConstructor
+public class ProblemIndexService {
+    private final LessonTimeSlotUtil lessonTimeSlotUtil;
+
+    public ProblemIndex createProblemIndex(TimetableRequirements timetableRequirements) {
+        return createProblemIndex(createCompactTimetableRequirements(timetableRequirements));
+    }
+
+    public ProblemIndex createProblemIndex(CompactTimetableRequirements timetableRequirements) {
+        // Lessons keep their indexes in the bits of a long, larger indexes would corrupt the other fields
+        checkCount("time slots", timetableRequirements.getTimeSlots().size(), LessonCodec.MAX_TIME_SLOTS_COUNT);
+        checkCount("places", timetableRequirements.getPlacesCount(), LessonCodec.MAX_PLACES_COUNT);
+        checkCount("requirements", timetableRequirements.getRequirementsCount(), LessonCodec.MAX_REQUIREMENTS_COUNT);
+
+        ProblemIndex.ProblemIndexBuilder builder = ProblemIndex.builder()
+                .timeSlots(timetableRequirements.getTimeSlots())
+                .requirementsCount(timetableRequirements.getRequirementsCount())
+                .placesCount(timetableRequirements.getPlacesCount());
+
+        addTimeSlots(builder, timetableRequirements.getTimeSlots());
+        addLessons(builder, timetableRequirements);
+
+        return builder.build();
+    }
+
+    /**
+     * Creates the index of the changed requirements, which keeps the lessons of the previous timetable that are not
+     * affected by the change as published lessons
+     */
+    public ProblemIndex createProblemIndex(TimetableRequirements timetableRequirements, Lesson[] previousLessons,
+                                           TimetableRequirementsChange change) {
+        ProblemIndex problemIndex = createProblemIndex(timetableRequirements);
+
+        return problemIndex.toBuilder()
+                .publishedLessons(createPublishedLessons(problemIndex, previousLessons, change))
+                .build();
+    }
+
+    private void checkCount(String name, long count, long maxCount) {
+        if (count > maxCount) {
+            throw new RuntimeException("Too many " + name + ": " + count + ", at most " + maxCount
+                    + " are supported");
+        }
+    }
+
+    private void addTimeSlots(ProblemIndex.ProblemIndexBuilder builder, List<LessonTimeSlot> timeSlots) {
+        int timeSlotsCount = timeSlots.size();
+
+        // Every time slot gets its own cell of the occupancy grids, so equal time slots would share one
+        int[] timeSlotOrders = new int[timeSlotsCount];
+        for (int i = 0; i < timeSlotsCount; ++i) {
+            for (int j = 0; j < timeSlotsCount; ++j) {
+                int comparison = timeSlots.get(j).compareTo(timeSlots.get(i));
+                if (comparison < 0) {
+                    ++timeSlotOrders[i];
+                } else if (comparison == 0 && j != i) {
+                    throw new RuntimeException("Time slot " + timeSlots.get(i) + " is given more than once");
+                }
+            }
+        }
+
+        boolean[][] timeSlotConflicts = new boolean[timeSlotsCount][timeSlotsCount];
+        boolean[][] timeSlotWindows = new boolean[timeSlotsCount][timeSlotsCount];
+        for (int i = 0; i < timeSlotsCount; ++i) {
+            for (int j = 0; j < timeSlotsCount; ++j) {
+                timeSlotConflicts[i][j] = lessonTimeSlotUtil.isConflict(timeSlots.get(i), timeSlots.get(j));
+                timeSlotWindows[i][j] = lessonTimeSlotUtil.isWindow(timeSlots.get(i), timeSlots.get(j));
+            }
+        }
+
+        builder.timeSlotsCount(timeSlotsCount)
+                .timeSlotOrders(timeSlotOrders)
+                .timeSlotConflicts(timeSlotConflicts)
+                .timeSlotWindows(timeSlotWindows);
+    }
+
+    /**
+     * Assigns every previous lesson of unchanged requirements to a lesson of the same requirements and periodicity
+     * kind, the lessons without a previous one stay unpublished
+     */
+    private long[] createPublishedLessons(ProblemIndex problemIndex, Lesson[] previousLessons,
+                                          TimetableRequirementsChange change) {
+        List<LessonTimeSlot> timeSlots = problemIndex.getTimeSlots();
+        int[] requirementsIndexes = change.getRequirementsIndexes();
+        int[] placeIndexes = change.getPlaceIndexes();
+
+        int[] lessonRequirementsIndexes = problemIndex.getLessonRequirementsIndexes();
+        boolean[] biweeklyLessons = problemIndex.getBiweeklyLessons();
+        int lessonsCount = problemIndex.getLessonsCount();
+
+        // Lessons of every requirements are consecutive
+        int requirementsCount = problemIndex.getRequirementsCount();
+        int[] requirementsLessonOffsets = new int[requirementsCount + 1];
+        for (int requirementsIndex : lessonRequirementsIndexes) {
+            ++requirementsLessonOffsets[requirementsIndex + 1];
+        }
+        for (int i = 1; i <= requirementsCount; ++i) {
+            requirementsLessonOffsets[i] += requirementsLessonOffsets[i - 1];
+        }
+
+        long[] publishedLessons = new long[lessonsCount];
+        Arrays.fill(publishedLessons, ProblemIndex.NOT_PUBLISHED);
+
+        for (Lesson previousLesson : previousLessons) {
+            int requirementsIndex = requirementsIndexes[previousLesson.getRequirementsIndex()];
+            int placeIndex = placeIndexes != null
+                    ? placeIndexes[previousLesson.getPlaceIndex()]
+                    : previousLesson.getPlaceIndex();
+            int timeSlotIndex = timeSlots.indexOf(previousLesson.getTimeSlot());
+            if (requirementsIndex < 0 || placeIndex < 0 || timeSlotIndex < 0) {
+                continue;
+            }
+
+            boolean isBiweekly = previousLesson.getPeriodicity() != LessonPeriodicity.WEEKLY;
+            for (int lessonIndex = requirementsLessonOffsets[requirementsIndex];
+                 lessonIndex < requirementsLessonOffsets[requirementsIndex + 1]; ++lessonIndex) {
+
+                if (publishedLessons[lessonIndex] == ProblemIndex.NOT_PUBLISHED
+                        && biweeklyLessons[lessonIndex] == isBiweekly) {
+                    publishedLessons[lessonIndex] = LessonCodec.encode(requirementsIndex,
+                            previousLesson.getDay().ordinal(), timeSlotIndex, placeIndex,
+                            previousLesson.getPeriodicity().ordinal());
+                    break;
+                }
+            }
+        }
+
+        return publishedLessons;
+    }
+
+    /**
+     * Converts the requirements to the compact form with the academic groups of every requirements in the ascending
+     * order, so that the index does not depend on the sets
+     */
+    private CompactTimetableRequirements createCompactTimetableRequirements(
+            TimetableRequirements timetableRequirements) {
+        List<LessonRequirements> lessonRequirementsList = timetableRequirements.getLessonRequirementsList();
+        int requirementsCount = lessonRequirementsList.size();
+
+        int lecturersCount = 0;
+        int academicGroupsCount = 0;
+        int[] lecturerIndexes = new int[requirementsCount];
+        int[] academicGroupOffsets = new int[requirementsCount + 1];
+        double[] lessonsCountsPerWeek = new double[requirementsCount];
+        for (int i = 0; i < requirementsCount; ++i) {
+            LessonRequirements lessonRequirements = lessonRequirementsList.get(i);
+
+            lecturerIndexes[i] = lessonRequirements.getLecturerIndex();
+            lecturersCount = Math.max(lecturersCount, lecturerIndexes[i] + 1);
+            academicGroupOffsets[i + 1] = academicGroupOffsets[i] + lessonRequirements.getAcademicGroupIndexes().size();
+            lessonsCountsPerWeek[i] = lessonRequirements.getLessonsCountPerWeek();
+        }
+
+        int[] academicGroupIndexes = new int[academicGroupOffsets[requirementsCount]];
+        for (int i = 0; i < requirementsCount; ++i) {
+            int academicGroupOffset = academicGroupOffsets[i];
+            for (int academicGroupIndex : lessonRequirementsList.get(i).getAcademicGroupIndexes()) {
+                academicGroupIndexes[academicGroupOffset++] = academicGroupIndex;
+                academicGroupsCount = Math.max(academicGroupsCount, academicGroupIndex + 1);
+            }
+            Arrays.sort(academicGroupIndexes, academicGroupOffsets[i], academicGroupOffset);
+        }
+
+        return new CompactTimetableRequirements(lecturersCount, academicGroupsCount,
+                timetableRequirements.getLessonPlaces().size(),
+                timetableRequirements.getTimeSlots(), lecturerIndexes, academicGroupOffsets, academicGroupIndexes,
+                lessonsCountsPerWeek);
+    }
+
+    private void addLessons(ProblemIndex.ProblemIndexBuilder builder, CompactTimetableRequirements requirements) {
+        int requirementsCount = requirements.getRequirementsCount();
+        int[] lecturerIndexes = requirements.getLecturerIndexes();
+        int[] academicGroupOffsets = requirements.getAcademicGroupOffsets();
+        int[] academicGroupIndexes = requirements.getAcademicGroupIndexes();
+        double[] lessonsCountsPerWeek = requirements.getLessonsCountsPerWeek();
+
+        int lessonsCount = 0;
+        int lessonAcademicGroupsCount = 0;
+        int lecturersCount = 0;
+        int academicGroupsCount = 0;
+        for (int i = 0; i < requirementsCount; ++i) {
+            int requirementsLessonsCount = (int) Math.ceil(lessonsCountsPerWeek[i]);
+            lessonsCount += requirementsLessonsCount;
+            lessonAcademicGroupsCount += requirementsLessonsCount * (academicGroupOffsets[i + 1] - academicGroupOffsets[i]);
+
+            lecturersCount = Math.max(lecturersCount, lecturerIndexes[i] + 1);
+            for (int j = academicGroupOffsets[i]; j < academicGroupOffsets[i + 1]; ++j) {
+                academicGroupsCount = Math.max(academicGroupsCount, academicGroupIndexes[j] + 1);
+            }
+        }
+
+        int[] lessonRequirementsIndexes = new int[lessonsCount];
+        boolean[] biweeklyLessons = new boolean[lessonsCount];
+        int[] lessonLecturers = new int[lessonsCount];
+        int[] lessonAcademicGroupOffsets = new int[lessonsCount + 1];
+        int[] lessonAcademicGroups = new int[lessonAcademicGroupsCount];
+
+        int lessonIndex = 0;
+        for (int i = 0; i < requirementsCount; ++i) {
+            int academicGroupsFrom = academicGroupOffsets[i];
+            int requirementsAcademicGroupsCount = academicGroupOffsets[i + 1] - academicGroupsFrom;
+
+            double numberOfClassesPerWeek = lessonsCountsPerWeek[i];
+            while (numberOfClassesPerWeek > 0) {
+                lessonRequirementsIndexes[lessonIndex] = i;
+                biweeklyLessons[lessonIndex] = numberOfClassesPerWeek < 1;
+                lessonLecturers[lessonIndex] = lecturerIndexes[i];
+
+                int academicGroupOffset = lessonAcademicGroupOffsets[lessonIndex];
+                System.arraycopy(academicGroupIndexes, academicGroupsFrom, lessonAcademicGroups, academicGroupOffset,
+                        requirementsAcademicGroupsCount);
+                lessonAcademicGroupOffsets[lessonIndex + 1] = academicGroupOffset + requirementsAcademicGroupsCount;
+
+                ++lessonIndex;
+                --numberOfClassesPerWeek;
+            }
+        }
+
+        int[] lecturerLessonOffsets = new int[lecturersCount + 1];
+        int[] lecturerLessons = new int[lessonsCount];
+        groupLessons(lessonLecturers, lecturerLessonOffsets, lecturerLessons);
+
+        int[] academicGroupLessonOffsets = new int[academicGroupsCount + 1];
+        int[] academicGroupLessons = new int[lessonAcademicGroupsCount];
+        groupLessons(lessonAcademicGroupOffsets, lessonAcademicGroups, academicGroupLessonOffsets, academicGroupLessons);
+
+        builder.lecturersCount(lecturersCount)
+                .academicGroupsCount(academicGroupsCount)
+                .lessonRequirementsIndexes(lessonRequirementsIndexes)
+                .biweeklyLessons(biweeklyLessons)
+                .lessonLecturers(lessonLecturers)
+                .lessonAcademicGroupOffsets(lessonAcademicGroupOffsets)
+                .lessonAcademicGroups(lessonAcademicGroups)
+                .lecturerLessonOffsets(lecturerLessonOffsets)
+                .lecturerLessons(lecturerLessons)
+                .academicGroupLessonOffsets(academicGroupLessonOffsets)
+                .academicGroupLessons(academicGroupLessons);
+    }
+
+    /**
+     * Inverts the lesson to resource mapping into lists of lessons of every resource
+     */
+    private void groupLessons(int[] lessonResources, int[] resourceLessonOffsets, int[] resourceLessons) {
+        int[] lessonResourceOffsets = new int[lessonResources.length + 1];
+        Arrays.setAll(lessonResourceOffsets, i -> i);
+
+        groupLessons(lessonResourceOffsets, lessonResources, resourceLessonOffsets, resourceLessons);
+    }
+
+    private void groupLessons(int[] lessonResourceOffsets, int[] lessonResources, int[] resourceLessonOffsets,
+                              int[] resourceLessons) {
+        int lessonsCount = lessonResourceOffsets.length - 1;
+
+        for (int resourceIndex : lessonResources) {
+            ++resourceLessonOffsets[resourceIndex + 1];
+        }
+        for (int i = 1; i < resourceLessonOffsets.length; ++i) {
+            resourceLessonOffsets[i] += resourceLessonOffsets[i - 1];
+        }
+
+        int[] resourceLessonsCounts = Arrays.copyOf(resourceLessonOffsets, resourceLessonOffsets.length - 1);
+        for (int lessonIndex = 0; lessonIndex < lessonsCount; ++lessonIndex) {
+            for (int i = lessonResourceOffsets[lessonIndex]; i < lessonResourceOffsets[lessonIndex + 1]; ++i) {
+                resourceLessons[resourceLessonsCounts[lessonResources[i]]++] = lessonIndex;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.service.TimetableEvaluationService.ResourcePenaltyOptions;
+import org.lnu.timetable.generation.util.LessonCodec;
+
+/**
+ * Occupancy grids of all lecturers, academic groups and places of a timetable, updated in place when a lesson moves.
+ * Conflicts and time windows are counted by the rules of {@link TimetableEvaluationService} and kept per resource and
+ * day, so moving a lesson only re-scores the two days it touches for the resources of the lesson.
+ *
+ * <p>Resources are numbered lecturers first, then academic groups, then places. Moves of published lessons of a
+ * re-solve are penalized on top of the resource penalties.
+ */
+class ResourceOccupancy {
+    private final ProblemIndex problemIndex;
+    private final long[] lessons;
+    private final ResourcePenaltyOptions[] resourcePenaltyOptions;
+
+    private final int academicGroupsOffset;
+    private final int placesOffset;
+    private final int timeSlotsCount;
+    private final int cellsCount;
+    private final int[] timeSlotsByOrder;
+
+    /**
+     * Lessons of every resource and grid cell in each half of the week, weekly lessons occupy both halves
+     */
+    private final int[] numeratorCounts;
+    private final int[] denominatorCounts;
+
+    private final double[] dayConflictTimeSlotsCounts;
+    private final double[] dayTimeWindowCounts;
+    private final double[] conflictTimeSlotsCounts;
+    private final double[] timeWindowCounts;
+
+    private final int[] lessonResources;
+
+    private final double publishedLessonMovePenalty;
+
+    private double penalty;
+
+    ResourceOccupancy(ProblemIndex problemIndex, long[] lessons, ResourcePenaltyOptions lecturerPenaltyOptions,
+                      ResourcePenaltyOptions academicGroupPenaltyOptions, ResourcePenaltyOptions placePenaltyOptions,
+                      double publishedLessonMovePenalty) {
+        this.problemIndex = problemIndex;
+        this.lessons = lessons;
+        this.publishedLessonMovePenalty = publishedLessonMovePenalty;
+
+        academicGroupsOffset = problemIndex.getLecturersCount();
+        placesOffset = academicGroupsOffset + problemIndex.getAcademicGroupsCount();
+        int resourcesCount = placesOffset + problemIndex.getPlacesCount();
+
+        resourcePenaltyOptions = new ResourcePenaltyOptions[resourcesCount];
+        for (int resource = 0; resource < resourcesCount; ++resource) {
+            resourcePenaltyOptions[resource] = resource < academicGroupsOffset ? lecturerPenaltyOptions
+                    : resource < placesOffset ? academicGroupPenaltyOptions : placePenaltyOptions;
+        }
+
+        timeSlotsCount = problemIndex.getTimeSlotsCount();
+        cellsCount = LessonCodec.DAYS_COUNT * timeSlotsCount;
+
+        int[] timeSlotOrders = problemIndex.getTimeSlotOrders();
+        timeSlotsByOrder = new int[timeSlotsCount];
+        for (int timeSlot = 0; timeSlot < timeSlotsCount; ++timeSlot) {
+            timeSlotsByOrder[timeSlotOrders[timeSlot]] = timeSlot;
+        }
+
+        numeratorCounts = new int[resourcesCount * cellsCount];
+        denominatorCounts = new int[resourcesCount * cellsCount];
+
+        dayConflictTimeSlotsCounts = new double[resourcesCount * LessonCodec.DAYS_COUNT];
+        dayTimeWindowCounts = new double[resourcesCount * LessonCodec.DAYS_COUNT];
+        conflictTimeSlotsCounts = new double[resourcesCount];
+        timeWindowCounts = new double[resourcesCount];
+
+        int[] lessonAcademicGroupOffsets = problemIndex.getLessonAcademicGroupOffsets();
+        int maxLessonAcademicGroupsCount = 0;
+        for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+            maxLessonAcademicGroupsCount = Math.max(maxLessonAcademicGroupsCount,
+                    lessonAcademicGroupOffsets[lessonIndex + 1] - lessonAcademicGroupOffsets[lessonIndex]);
+        }
+        // The lecturer, academic groups and both places of a moved lesson
+        lessonResources = new int[maxLessonAcademicGroupsCount + 3];
+
+        for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+            long lesson = lessons[lessonIndex];
+
+            int personResourcesCount = getPersonResources(lessonIndex);
+            for (int i = 0; i < personResourcesCount; ++i) {
+                updateCell(lessonResources[i], lesson, 1);
+            }
+            updateCell(placesOffset + LessonCodec.getPlaceIndex(lesson), lesson, 1);
+        }
+
+        for (int resource = 0; resource < resourcesCount; ++resource) {
+            for (int day = 0; day < LessonCodec.DAYS_COUNT; ++day) {
+                updateDay(resource, day);
+            }
+            penalty += calcResourcePenalty(resource);
+        }
+
+        for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+            penalty += calcPublishedLessonMovePenalty(lessonIndex, lessons[lessonIndex]);
+        }
+    }
+
+    double getPenalty() {
+        return penalty;
+    }
+
+    /**
+     * Calculates how the penalty of the timetable would change if the lesson was replaced with the moved one, which
+     * differs from it in the day, time slot, place or periodicity
+     */
+    double calcMovePenaltyDelta(int lessonIndex, long movedLesson) {
+        long lesson = lessons[lessonIndex];
+        if (movedLesson == lesson) {
+            return 0;
+        }
+
+        double penaltyDelta = moveLesson(lessonIndex, movedLesson);
+        moveLesson(lessonIndex, lesson);
+
+        return penaltyDelta;
+    }
+
+    /**
+     * Calculates how the penalty of the timetable would change if the lessons exchanged their days, time slots and
+     * places
+     */
+    double calcSwapPenaltyDelta(int lessonIndex1, int lessonIndex2) {
+        long lesson1 = lessons[lessonIndex1];
+        long lesson2 = lessons[lessonIndex2];
+
+        double penaltyDelta = swapLessons(lessonIndex1, lessonIndex2);
+        moveLesson(lessonIndex2, lesson2);
+        moveLesson(lessonIndex1, lesson1);
+
+        return penaltyDelta;
+    }
+
+    /**
+     * Replaces the lesson of the timetable with the moved one and returns the change of the penalty
+     */
+    double moveLesson(int lessonIndex, long movedLesson) {
+        long lesson = lessons[lessonIndex];
+
+        int placeResource = placesOffset + LessonCodec.getPlaceIndex(lesson);
+        int movedPlaceResource = placesOffset + LessonCodec.getPlaceIndex(movedLesson);
+
+        // The lecturer and academic groups of the lesson followed by its places before and after the move
+        int personResourcesCount = getPersonResources(lessonIndex);
+        int lessonResourcesCount = personResourcesCount;
+        lessonResources[lessonResourcesCount++] = placeResource;
+        if (movedPlaceResource != placeResource) {
+            lessonResources[lessonResourcesCount++] = movedPlaceResource;
+        }
+
+        double prevPenalty = 0;
+        for (int i = 0; i < lessonResourcesCount; ++i) {
+            prevPenalty += calcResourcePenalty(lessonResources[i]);
+        }
+
+        for (int i = 0; i < personResourcesCount; ++i) {
+            updateCell(lessonResources[i], lesson, -1);
+            updateCell(lessonResources[i], movedLesson, 1);
+        }
+        updateCell(placeResource, lesson, -1);
+        updateCell(movedPlaceResource, movedLesson, 1);
+
+        lessons[lessonIndex] = movedLesson;
+
+        int day = LessonCodec.getDay(lesson);
+        int movedDay = LessonCodec.getDay(movedLesson);
+
+        double penalty = 0;
+        for (int i = 0; i < lessonResourcesCount; ++i) {
+            int resource = lessonResources[i];
+
+            updateDay(resource, day);
+            if (movedDay != day) {
+                updateDay(resource, movedDay);
+            }
+
+            penalty += calcResourcePenalty(resource);
+        }
+
+        double penaltyDelta = penalty - prevPenalty
+                + calcPublishedLessonMovePenalty(lessonIndex, movedLesson)
+                - calcPublishedLessonMovePenalty(lessonIndex, lesson);
+        this.penalty += penaltyDelta;
+
+        return penaltyDelta;
+    }
+
+    /**
+     * Exchanges the days, time slots and places of the lessons and returns the change of the penalty
+     */
+    double swapLessons(int lessonIndex1, int lessonIndex2) {
+        long lesson1 = lessons[lessonIndex1];
+        long lesson2 = lessons[lessonIndex2];
+
+        return moveLesson(lessonIndex1, withPosition(lesson1, lesson2))
+                + moveLesson(lessonIndex2, withPosition(lesson2, lesson1));
+    }
+
+    private static long withPosition(long lesson, long positionLesson) {
+        lesson = LessonCodec.withDay(lesson, LessonCodec.getDay(positionLesson));
+        lesson = LessonCodec.withTimeSlotIndex(lesson, LessonCodec.getTimeSlotIndex(positionLesson));
+        return LessonCodec.withPlaceIndex(lesson, LessonCodec.getPlaceIndex(positionLesson));
+    }
+
+    private double calcPublishedLessonMovePenalty(int lessonIndex, long lesson) {
+        if (problemIndex.getPublishedLessons() == null) {
+            return 0;
+        }
+        return TimetableEvaluationService.calcPublishedLessonMovePenalty(problemIndex, lessonIndex, lesson,
+                publishedLessonMovePenalty);
+    }
+
+    /**
+     * Collects the lecturer and academic groups of the lesson into the resources buffer
+     */
+    private int getPersonResources(int lessonIndex) {
+        int[] lessonAcademicGroupOffsets = problemIndex.getLessonAcademicGroupOffsets();
+        int[] lessonAcademicGroups = problemIndex.getLessonAcademicGroups();
+
+        int count = 0;
+        lessonResources[count++] = problemIndex.getLessonLecturers()[lessonIndex];
+        for (int i = lessonAcademicGroupOffsets[lessonIndex]; i < lessonAcademicGroupOffsets[lessonIndex + 1]; ++i) {
+            lessonResources[count++] = academicGroupsOffset + lessonAcademicGroups[i];
+        }
+
+        return count;
+    }
+
+    private void updateCell(int resource, long lesson, int delta) {
+        int cell = resource * cellsCount + LessonCodec.getDay(lesson) * timeSlotsCount
+                + problemIndex.getTimeSlotOrders()[LessonCodec.getTimeSlotIndex(lesson)];
+
+        int periodicity = LessonCodec.getPeriodicity(lesson);
+        if (periodicity != LessonCodec.DENOMINATOR) {
+            numeratorCounts[cell] += delta;
+        }
+        if (periodicity != LessonCodec.NUMERATOR) {
+            denominatorCounts[cell] += delta;
+        }
+    }
+
+    /**
+     * Re-counts the conflicts and time windows of the day of the resource and updates the totals of the resource
+     */
+    private void updateDay(int resource, int day) {
+        boolean[][] timeSlotConflicts = problemIndex.getTimeSlotConflicts();
+        boolean[][] timeSlotWindows = problemIndex.getTimeSlotWindows();
+
+        ResourcePenaltyOptions options = resourcePenaltyOptions[resource];
+        boolean isTimeWindowPenalized = options.timeWindowPenalty() != 0;
+
+        double conflictTimeSlotsCount = 0;
+        double timeWindowDayCount = 0;
+
+        int dayFirstCell = resource * cellsCount + day * timeSlotsCount;
+        int prevTimeSlot = -1;
+        int prevNumeratorCount = 0;
+        int prevDenominatorCount = 0;
+        for (int order = 0; order < timeSlotsCount; ++order) {
+            int numeratorCount = numeratorCounts[dayFirstCell + order];
+            int denominatorCount = denominatorCounts[dayFirstCell + order];
+            if (numeratorCount == 0 && denominatorCount == 0) {
+                continue;
+            }
+
+            conflictTimeSlotsCount += 0.5 * (Math.max(numeratorCount - 1, 0) + Math.max(denominatorCount - 1, 0));
+
+            int timeSlot = timeSlotsByOrder[order];
+            if (prevTimeSlot != -1) {
+                if (timeSlotConflicts[prevTimeSlot][timeSlot]) {
+                    conflictTimeSlotsCount += 0.5 * (
+                            (prevNumeratorCount > 0 && numeratorCount > 0 ? 1 : 0)
+                                    + (prevDenominatorCount > 0 && denominatorCount > 0 ? 1 : 0));
+                }
+
+                if (isTimeWindowPenalized && timeSlotWindows[prevTimeSlot][timeSlot]) {
+                    ++timeWindowDayCount;
+                }
+            }
+
+            prevTimeSlot = timeSlot;
+            prevNumeratorCount = numeratorCount;
+            prevDenominatorCount = denominatorCount;
+        }
+
+        if (timeWindowDayCount > 0) {
+            timeWindowDayCount = Math.pow(timeWindowDayCount, options.timeWindowPenaltyDayPower());
+        }
+
+        int resourceDay = resource * LessonCodec.DAYS_COUNT + day;
+
+        conflictTimeSlotsCounts[resource] += conflictTimeSlotsCount - dayConflictTimeSlotsCounts[resourceDay];
+        dayConflictTimeSlotsCounts[resourceDay] = conflictTimeSlotsCount;
+
+        timeWindowCounts[resource] += timeWindowDayCount - dayTimeWindowCounts[resourceDay];
+        dayTimeWindowCounts[resourceDay] = timeWindowDayCount;
+    }
+
+    private double calcResourcePenalty(int resource) {
+        ResourcePenaltyOptions options = resourcePenaltyOptions[resource];
+
+        double penalty = 0;
+
+        double conflictTimeSlotsCount = conflictTimeSlotsCounts[resource];
+        if (conflictTimeSlotsCount > 0) {
+            penalty += Math.pow(conflictTimeSlotsCount, options.conflictTimeSlotPenaltyPower())
+                    * options.conflictTimeSlotPenalty();
+        }
+
+        double timeWindowCount = timeWindowCounts[resource];
+        if (timeWindowCount > 0) {
+            penalty += Math.pow(timeWindowCount, options.timeWindowPenaltyPower()) * options.timeWindowPenalty();
+        }
+
+        return penalty;
+    }
+}
@@ -0,0 +1,99 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.SolverType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Simulated annealing: a random move is made when it does not worsen the timetable, or with the probability
+ * {@code exp(-penaltyDelta / temperature)} otherwise. The temperature cools geometrically from the initial to the final
+ * one over the iterations, or over the time left when the deadline comes earlier.
+ */
+@Service
+public class SimulatedAnnealingTimetableSolver extends LocalSearchTimetableSolver {
+    /**
+     * The clock is read once per this number of iterations, which are much cheaper than a {@link System#nanoTime()}
+     */
+    private static final int CLOCK_ITERATIONS_COUNT = 1024;
+
+    private final int iterationsMaxCount;
+    private final double initialTemperature;
+    private final double finalTemperature;
+
+    public SimulatedAnnealingTimetableSolver(
+            TimetableEvaluationService timetableEvaluationService,
+
+            @Value("${annealing.iterations.max-count}") int iterationsMaxCount,
+            @Value("${annealing.temperature.initial}") double initialTemperature,
+            @Value("${annealing.temperature.final}") double finalTemperature
+    ) {
+        super(timetableEvaluationService);
+
+        this.iterationsMaxCount = iterationsMaxCount;
+        this.initialTemperature = initialTemperature;
+        this.finalTemperature = finalTemperature;
+    }
+
+    @Override
+    public SolverType getSolverType() {
+        return SolverType.SIMULATED_ANNEALING;
+    }
+
+    @Override
+    protected long[] search(ProblemIndex problemIndex, ResourceOccupancy occupancy, long[] lessons,
+                            SplittableRandom random, SolverControl control) {
+        LocalSearchMove move = new LocalSearchMove();
+
+        // The best lessons are copied only when the search leaves them
+        long[] bestLessons = lessons.clone();
+        double bestPenalty = occupancy.getPenalty();
+        boolean isBestCurrent = true;
+
+        long startNanos = System.nanoTime();
+        long deadlineNanos = control.getDeadlineNanos();
+        double temperature = initialTemperature;
+
+        int i = 0;
+        for (; i < iterationsMaxCount && bestPenalty > 0; ++i) {
+            if (i % CLOCK_ITERATIONS_COUNT == 0) {
+                if (control.isStopped()) {
+                    break;
+                }
+                publishSnapshot(problemIndex, isBestCurrent ? lessons : bestLessons, bestPenalty, control);
+
+                long nanos = System.nanoTime();
+
+                double progress = (double) i / iterationsMaxCount;
+                if (deadlineNanos != Long.MAX_VALUE) {
+                    progress = Math.max(progress, (double) (nanos - startNanos) / (deadlineNanos - startNanos));
+                }
+                temperature = initialTemperature * Math.pow(finalTemperature / initialTemperature, progress);
+            }
+
+            move.randomize(problemIndex, lessons, random);
+            double penaltyDelta = move.calcPenaltyDelta(occupancy);
+
+            if (penaltyDelta > 0 && random.nextDouble() >= Math.exp(-penaltyDelta / temperature)) {
+                continue;
+            }
+
+            if (isBestCurrent && penaltyDelta > 0) {
+                System.arraycopy(lessons, 0, bestLessons, 0, lessons.length);
+                isBestCurrent = false;
+            }
+
+            move.apply(occupancy);
+
+            if (occupancy.getPenalty() <= bestPenalty) {
+                bestPenalty = occupancy.getPenalty();
+                isBestCurrent = true;
+            }
+        }
+        control.recordIterationsCount(i);
+
+        return isBestCurrent ? lessons : bestLessons;
+    }
+}
@@ -0,0 +1,115 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Stops a running solver on its deadline or on cancellation and publishes the best timetables found so far. Solvers
+ * check it once per generation or iteration, so a cancellation takes effect within one of them.
+ */
+public class SolverControl {
+    private final long deadlineNanos;
+
+    /**
+     * Receives the improving best timetables, {@code null} to publish no snapshots
+     */
+    private final Consumer<EvaluatedTimetable> snapshotConsumer;
+    private final long snapshotIntervalNanos;
+
+    private volatile boolean isCancelled;
+
+    private volatile long seed;
+    private volatile int iterationsCount;
+
+    private volatile long nextSnapshotNanos;
+    private volatile double snapshotPenalty = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param timeBudget wall-clock time the generation may take, {@code null} for no limit
+     */
+    public SolverControl(Duration timeBudget) {
+        this(timeBudget, null, Duration.ZERO);
+    }
+
+    /**
+     * @param timeBudget       wall-clock time the generation may take, {@code null} for no limit
+     * @param snapshotConsumer receives the best timetable found so far whenever it improves, but at most once per
+     *                         snapshot interval. It is called in the solver threads and must not change the timetable.
+     */
+    public SolverControl(Duration timeBudget, Consumer<EvaluatedTimetable> snapshotConsumer, Duration snapshotInterval) {
+        long nanos = System.nanoTime();
+
+        this.deadlineNanos = timeBudget != null ? nanos + timeBudget.toNanos() : Long.MAX_VALUE;
+        this.snapshotConsumer = snapshotConsumer;
+        this.snapshotIntervalNanos = snapshotInterval.toNanos();
+        this.nextSnapshotNanos = nanos;
+    }
+
+    /**
+     * Makes the solver return the best timetable found so far
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Seed the solver started from, so that a run can be reproduced
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Generations or iterations made by the solver, known once it returns
+     */
+    public int getIterationsCount() {
+        return iterationsCount;
+    }
+
+    void recordSeed(long seed) {
+        this.seed = seed;
+    }
+
+    void recordIterationsCount(int iterationsCount) {
+        this.iterationsCount = iterationsCount;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} to stop at, {@link Long#MAX_VALUE} for no deadline
+     */
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    boolean isStopped() {
+        return isCancelled || System.nanoTime() >= deadlineNanos;
+    }
+
+    /**
+     * Tells whether a timetable with the given penalty is worth a snapshot, so that solvers build the snapshot only
+     * when it will be published
+     */
+    boolean isSnapshotDue(double penalty) {
+        return snapshotConsumer != null && penalty < snapshotPenalty && System.nanoTime() >= nextSnapshotNanos;
+    }
+
+    /**
+     * Publishes the timetable unless a timetable that is not worse has been published already
+     */
+    synchronized void publishSnapshot(EvaluatedTimetable timetable) {
+        if (snapshotConsumer == null || timetable.getPenalty() >= snapshotPenalty) {
+            return;
+        }
+
+        snapshotPenalty = timetable.getPenalty();
+        nextSnapshotNanos = System.nanoTime() + snapshotIntervalNanos;
+
+        snapshotConsumer.accept(timetable);
+    }
+}
@@ -0,0 +1,16 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A timetable generation running in the background. Cancelling it completes the result with the best timetable found
+ * so far.
+ */
+public record SolverJob(CompletableFuture<EvaluatedTimetable> result, SolverControl control) {
+
+    public void cancel() {
+        control.cancel();
+    }
+}
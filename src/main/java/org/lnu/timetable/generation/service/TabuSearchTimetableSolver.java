@@ -0,0 +1,90 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.SolverType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Tabu search: every iteration makes the best of the sampled moves, even a worsening one. Moved lessons are tabu for
+ * the tenure unless moving them gives the best timetable so far.
+ */
+@Service
+public class TabuSearchTimetableSolver extends LocalSearchTimetableSolver {
+    private final int iterationsMaxCount;
+    private final int candidatesCount;
+    private final int tenure;
+
+    public TabuSearchTimetableSolver(
+            TimetableEvaluationService timetableEvaluationService,
+
+            @Value("${tabu.iterations.max-count}") int iterationsMaxCount,
+            @Value("${tabu.candidates-count}") int candidatesCount,
+            @Value("${tabu.tenure}") int tenure
+    ) {
+        super(timetableEvaluationService);
+
+        this.iterationsMaxCount = iterationsMaxCount;
+        this.candidatesCount = candidatesCount;
+        this.tenure = tenure;
+    }
+
+    @Override
+    public SolverType getSolverType() {
+        return SolverType.TABU_SEARCH;
+    }
+
+    @Override
+    protected long[] search(ProblemIndex problemIndex, ResourceOccupancy occupancy, long[] lessons,
+                            SplittableRandom random, SolverControl control) {
+        int[] tabuIterations = new int[lessons.length];
+
+        LocalSearchMove move = new LocalSearchMove();
+        LocalSearchMove bestMove = new LocalSearchMove();
+
+        // The best lessons are copied only when the search leaves them
+        long[] bestLessons = lessons.clone();
+        double bestPenalty = occupancy.getPenalty();
+        boolean isBestCurrent = true;
+
+        int i = 0;
+        for (; i < iterationsMaxCount && bestPenalty > 0 && !control.isStopped(); ++i) {
+            double bestMovePenaltyDelta = Double.MAX_VALUE;
+            for (int j = 0; j < candidatesCount; ++j) {
+                move.randomize(problemIndex, lessons, random);
+                double penaltyDelta = move.calcPenaltyDelta(occupancy);
+
+                boolean isAllowed = !move.isTabu(tabuIterations, i)
+                        || occupancy.getPenalty() + penaltyDelta < bestPenalty;
+                if (isAllowed && penaltyDelta < bestMovePenaltyDelta) {
+                    bestMove.copy(move);
+                    bestMovePenaltyDelta = penaltyDelta;
+                }
+            }
+
+            if (bestMovePenaltyDelta == Double.MAX_VALUE) {
+                continue;
+            }
+
+            if (isBestCurrent && bestMovePenaltyDelta > 0) {
+                System.arraycopy(lessons, 0, bestLessons, 0, lessons.length);
+                isBestCurrent = false;
+            }
+
+            bestMove.apply(occupancy);
+            bestMove.setTabu(tabuIterations, i + tenure);
+
+            if (occupancy.getPenalty() <= bestPenalty) {
+                bestPenalty = occupancy.getPenalty();
+                isBestCurrent = true;
+            }
+
+            publishSnapshot(problemIndex, isBestCurrent ? lessons : bestLessons, bestPenalty, control);
+        }
+        control.recordIterationsCount(i);
+
+        return isBestCurrent ? lessons : bestLessons;
+    }
+}
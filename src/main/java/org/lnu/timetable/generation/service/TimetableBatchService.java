@@ -0,0 +1,250 @@
+package org.lnu.timetable.generation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lnu.timetable.generation.model.BatchJobResult;
+import org.lnu.timetable.generation.model.BatchSummary;
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.Lesson;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.TimetableBinaryFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Generates the timetables of many independent requirements files concurrently. Files are read and written in an I/O
+ * pool, while the generations run in a fixed pool of platform threads, so the wall-clock time of a batch is bounded by
+ * the cores rather than by the sum of the jobs.
+ *
+ * <p>The input is a directory of JSON or binary requirements files or a manifest with a requirements file and an optional time budget
+ * in milliseconds per line. The generated lessons of every job and a line of {@code results.jsonl} are written as soon
+ * as the job finishes, {@code summary.json} is written at the end.
+ */
+@Service
+public class TimetableBatchService {
+    private static final String JSON_FILE_EXTENSION = ".json";
+    private static final String TIMETABLE_FILE_SUFFIX = "-timetable.json";
+    private static final String RESULTS_FILE = "results.jsonl";
+    private static final String SUMMARY_FILE = "summary.json";
+
+    /**
+     * @param timeBudget wall-clock time the generation may take, {@code null} for no limit
+     */
+    private record BatchJob(Path requirementsFile, Duration timeBudget) {
+    }
+
+    private record SolvedJob(BatchJob job, CompactTimetableRequirements timetableRequirements,
+                             EvaluatedTimetable timetable, SolverControl control, long solveMillis) {
+    }
+
+    private final TimetableSolverService timetableSolverService;
+    private final TimetableGenerationDemo timetableGenerationDemo;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Directory or manifest of the batch, blank to run the demo instead
+     */
+    private final String input;
+    private final Path outputDirectory;
+    private final int workersCount;
+
+    /**
+     * Time budget of the jobs without their own one, {@code null} for no limit
+     */
+    private final Duration timeBudget;
+
+    public TimetableBatchService(
+            TimetableSolverService timetableSolverService,
+            TimetableGenerationDemo timetableGenerationDemo,
+            ObjectMapper objectMapper,
+
+            @Value("${batch.input}") String input,
+            @Value("${batch.output-directory}") String outputDirectory,
+            @Value("${batch.workers-count}") int workersCount,
+            @Value("${batch.time-budget-millis}") long timeBudgetMillis
+    ) {
+        this.timetableSolverService = timetableSolverService;
+        this.timetableGenerationDemo = timetableGenerationDemo;
+        this.objectMapper = objectMapper;
+
+        this.input = input;
+        this.outputDirectory = Path.of(outputDirectory);
+        this.workersCount = workersCount > 0 ? workersCount : Runtime.getRuntime().availableProcessors();
+        this.timeBudget = timeBudgetMillis > 0 ? Duration.ofMillis(timeBudgetMillis) : null;
+    }
+
+    public boolean isBatchConfigured() {
+        return !input.isBlank();
+    }
+
+    public BatchSummary solveBatch() {
+        return solveBatch(Path.of(input), outputDirectory);
+    }
+
+    public BatchSummary solveBatch(Path input, Path outputDirectory) {
+        List<BatchJob> jobs = readJobs(input);
+
+        ExecutorService ioExecutor = Executors.newCachedThreadPool();
+        ExecutorService solverExecutor = Executors.newFixedThreadPool(workersCount);
+
+        long startNanos = System.nanoTime();
+        List<BatchJobResult> results;
+        try (BufferedWriter resultsWriter = createWriter(outputDirectory.resolve(RESULTS_FILE))) {
+            List<CompletableFuture<BatchJobResult>> futures = jobs.stream()
+                    .map(job -> solveJob(job, outputDirectory, ioExecutor, solverExecutor)
+                            .thenApply(result -> writeResult(resultsWriter, result)))
+                    .toList();
+
+            results = futures.stream().map(CompletableFuture::join).toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            solverExecutor.shutdownNow();
+            ioExecutor.shutdownNow();
+        }
+        long wallClockMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        BatchSummary summary = new BatchSummary(
+                results.size(),
+                (int) results.stream().filter(result -> result.getError() != null).count(),
+                workersCount,
+                wallClockMillis,
+                results.stream().mapToLong(BatchJobResult::getSolveMillis).sum());
+
+        try {
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(outputDirectory.resolve(SUMMARY_FILE).toFile(), summary);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return summary;
+    }
+
+    /**
+     * Reads the requirements in the I/O pool, generates the timetable in the solver pool and writes it in the I/O pool.
+     * A failed job gives a result with the error instead of failing the batch.
+     */
+    private CompletableFuture<BatchJobResult> solveJob(BatchJob job, Path outputDirectory,
+                                                       ExecutorService ioExecutor, ExecutorService solverExecutor) {
+        return CompletableFuture
+                .supplyAsync(() -> timetableGenerationDemo.readCompactTimetableRequirements(job.requirementsFile()),
+                        ioExecutor)
+                .thenApplyAsync(timetableRequirements -> {
+                    long startNanos = System.nanoTime();
+                    SolverControl control = new SolverControl(job.timeBudget());
+                    EvaluatedTimetable timetable = timetableSolverService.generateTimetable(timetableRequirements,
+                            control);
+                    long solveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+                    return new SolvedJob(job, timetableRequirements, timetable, control, solveMillis);
+                }, solverExecutor)
+                .thenApplyAsync(solvedJob -> writeTimetable(solvedJob, outputDirectory), ioExecutor)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    return new BatchJobResult(job.requirementsFile().toString(), null, null, 0, 0, null, 0,
+                            String.valueOf(cause));
+                });
+    }
+
+    private BatchJobResult writeTimetable(SolvedJob solvedJob, Path outputDirectory) {
+        Path requirementsFile = solvedJob.job().requirementsFile();
+        String fileName = requirementsFile.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        if (extensionIndex > 0) {
+            fileName = fileName.substring(0, extensionIndex);
+        }
+        Path timetableFile = outputDirectory.resolve(fileName + TIMETABLE_FILE_SUFFIX);
+
+        EvaluatedTimetable timetable = solvedJob.timetable();
+        Lesson[] lessons = LessonCodec.decode(timetable.getLessons(),
+                solvedJob.timetableRequirements().getTimeSlots());
+
+        try {
+            objectMapper.writeValue(timetableFile.toFile(), lessons);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return new BatchJobResult(requirementsFile.toString(), timetableFile.toString(), timetable.getPenalty(),
+                lessons.length, solvedJob.solveMillis(), solvedJob.control().getSeed(),
+                solvedJob.control().getIterationsCount(), null);
+    }
+
+    /**
+     * Appends the result to the results file right away, so that the progress of a long batch can be followed. A failed
+     * write is recorded as the error of the job like a failed generation, so that the other jobs keep their results.
+     */
+    BatchJobResult writeResult(BufferedWriter resultsWriter, BatchJobResult result) {
+        synchronized (resultsWriter) {
+            try {
+                resultsWriter.write(objectMapper.writeValueAsString(result));
+                resultsWriter.newLine();
+                resultsWriter.flush();
+            } catch (IOException e) {
+                // The error of a failed job is kept, as it is the reason of the job failure
+                String error = result.getError() != null ? result.getError() : "Result is not written: " + e;
+                return new BatchJobResult(result.getRequirementsFile(), result.getTimetableFile(), result.getPenalty(),
+                        result.getLessonsCount(), result.getSolveMillis(), result.getSeed(),
+                        result.getIterationsCount(), error);
+            }
+        }
+        return result;
+    }
+
+    private List<BatchJob> readJobs(Path input) {
+        try {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.list(input)) {
+                    return files
+                            .filter(file -> isRequirementsFile(file.getFileName().toString()))
+                            .sorted()
+                            .map(file -> new BatchJob(file, timeBudget))
+                            .toList();
+                }
+            }
+
+            // Manifest lines are "<requirements file> [time budget in milliseconds]", relative to the manifest
+            Path manifestDirectory = input.toAbsolutePath().getParent();
+
+            List<BatchJob> jobs = new ArrayList<>();
+            for (String line : Files.readAllLines(input)) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                Duration jobTimeBudget = parts.length > 1 ? Duration.ofMillis(Long.parseLong(parts[1])) : timeBudget;
+                jobs.add(new BatchJob(manifestDirectory.resolve(parts[0]), jobTimeBudget));
+            }
+            return jobs;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isRequirementsFile(String fileName) {
+        return fileName.endsWith(JSON_FILE_EXTENSION)
+                || fileName.endsWith(TimetableBinaryFormat.REQUIREMENTS_FILE_EXTENSION);
+    }
+
+    private static BufferedWriter createWriter(Path pathToFile) throws IOException {
+        Files.createDirectories(pathToFile.toAbsolutePath().getParent());
+        return Files.newBufferedWriter(pathToFile);
+    }
+}
@@ -0,0 +1,562 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.ZobristHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+@Service
+public class TimetableEvaluationService {
+    private static final double PENALTY_EPSILON = 1e-9;
+
+    /**
+     * Lesson indexes grouped by places in the same layout as the lessons of resources in {@link ProblemIndex}. The
+     * positions are the scratch of the grouping.
+     */
+    private record PlaceLessons(int[] offsets, int[] positions, int[] lessonIndexes) {
+
+        PlaceLessons(ProblemIndex problemIndex) {
+            this(new int[problemIndex.getPlacesCount() + 1], new int[problemIndex.getPlacesCount()],
+                    new int[problemIndex.getLessonsCount()]);
+        }
+    }
+
+    /**
+     * Scratch arrays reused by the timelines of a single evaluation. The occupancy grid has a cell for every day and
+     * time slot in the order of time, every cell holds a linked list of its lessons. Cells are empty between timelines.
+     */
+    private record ResourceBuffers(int[] cellLessonHeads, int[] nextCellLessons, int[] conflictTimeSlotLessonIndexes,
+                                   int[] timeWindowLessonIndexes) {
+
+        ResourceBuffers(ProblemIndex problemIndex, int lessonsCount) {
+            this(createCellLessonHeads(problemIndex), new int[lessonsCount], new int[lessonsCount], new int[lessonsCount]);
+        }
+
+        private static int[] createCellLessonHeads(ProblemIndex problemIndex) {
+            int[] cellLessonHeads = new int[LessonCodec.DAYS_COUNT * problemIndex.getTimeSlotsCount()];
+            Arrays.fill(cellLessonHeads, -1);
+            return cellLessonHeads;
+        }
+    }
+
+    /**
+     * Buffers of the evaluations made by a thread for a problem, so that an evaluation allocates only its result. The
+     * affected resources are cleared by every evaluation before use.
+     */
+    private record EvaluationBuffers(ProblemIndex problemIndex, ResourceBuffers resourceBuffers,
+                                     PlaceLessons parentPlaceLessons, PlaceLessons placeLessons,
+                                     BitSet affectedLecturers, BitSet affectedAcademicGroups, BitSet affectedPlaces) {
+
+        EvaluationBuffers(ProblemIndex problemIndex) {
+            this(problemIndex, new ResourceBuffers(problemIndex, problemIndex.getLessonsCount()),
+                    new PlaceLessons(problemIndex), new PlaceLessons(problemIndex),
+                    new BitSet(problemIndex.getLecturersCount()), new BitSet(problemIndex.getAcademicGroupsCount()),
+                    new BitSet(problemIndex.getPlacesCount()));
+        }
+    }
+
+    record ResourcePenaltyOptions(double conflictTimeSlotPenalty, double conflictTimeSlotPenaltyPower,
+                                          double timeWindowPenalty, double timeWindowPenaltyPower,
+                                          double timeWindowPenaltyDayPower) {
+    }
+
+    private final ResourcePenaltyOptions lecturerPenaltyOptions;
+    private final ResourcePenaltyOptions academicGroupPenaltyOptions;
+    private final ResourcePenaltyOptions placePenaltyOptions;
+
+    /**
+     * Penalty of every published lesson of a re-solve that is not at its published day, time slot, place or periodicity
+     */
+    private final double publishedLessonMovePenalty;
+
+    /**
+     * Offspring are evaluated by the threads of the evaluation pool, every thread keeps the buffers of its last problem
+     */
+    private final ThreadLocal<EvaluationBuffers> evaluationBuffers = new ThreadLocal<>();
+
+    public TimetableEvaluationService(
+            @Value("${penalty.lecturer.conflict_time_slot}") double lecturerConflictTimeSlotPenalty,
+            @Value("${penalty.lecturer.conflict_time_slot.power}") double lecturerConflictTimeSlotPenaltyPower,
+            @Value("${penalty.lecturer.time_window}") double lecturerTimeWindowPenalty,
+            @Value("${penalty.lecturer.time_window.power}") double lecturerTimeWindowPenaltyPower,
+            @Value("${penalty.lecturer.time_window.power.day}") double lecturerTimeWindowPenaltyDayPower,
+
+            @Value("${penalty.academic_group.conflict_time_slot}") double academicGroupConflictTimeSlotPenalty,
+            @Value("${penalty.academic_group.conflict_time_slot.power}") double academicGroupConflictTimeSlotPenaltyPower,
+            @Value("${penalty.academic_group.time_window}") double academicGroupTimeWindowPenalty,
+            @Value("${penalty.academic_group.time_window.power}") double academicGroupTimeWindowPenaltyPower,
+            @Value("${penalty.academic_group.time_window.power.day}") double academicGroupTimeWindowPenaltyDayPower,
+
+            @Value("${penalty.place.conflict_time_slot}") double placeConflictTimeSlotPenalty,
+            @Value("${penalty.place.conflict_time_slot.power}") double placeConflictTimeSlotPenaltyPower,
+
+            @Value("${penalty.published_lesson.move}") double publishedLessonMovePenalty
+    ) {
+        lecturerPenaltyOptions = new ResourcePenaltyOptions(
+                lecturerConflictTimeSlotPenalty, lecturerConflictTimeSlotPenaltyPower,
+                lecturerTimeWindowPenalty, lecturerTimeWindowPenaltyPower, lecturerTimeWindowPenaltyDayPower);
+
+        academicGroupPenaltyOptions = new ResourcePenaltyOptions(
+                academicGroupConflictTimeSlotPenalty, academicGroupConflictTimeSlotPenaltyPower,
+                academicGroupTimeWindowPenalty, academicGroupTimeWindowPenaltyPower, academicGroupTimeWindowPenaltyDayPower);
+
+        // Time windows are not penalized for places
+        placePenaltyOptions = new ResourcePenaltyOptions(
+                placeConflictTimeSlotPenalty, placeConflictTimeSlotPenaltyPower, 0, 0, 0);
+
+        this.publishedLessonMovePenalty = publishedLessonMovePenalty;
+    }
+
+    public EvaluatedTimetable evaluateTimetable(ProblemIndex problemIndex, long[] lessons) {
+        EvaluationBuffers evaluationBuffers = getEvaluationBuffers(problemIndex);
+        ResourceBuffers buffers = evaluationBuffers.resourceBuffers();
+
+        PlaceLessons placeLessons = evaluationBuffers.placeLessons();
+        groupLessonsByPlace(lessons, null, placeLessons);
+
+        double penalty = 0;
+        double[] lessonPenalties = new double[lessons.length];
+
+        int[] lecturerLessonOffsets = problemIndex.getLecturerLessonOffsets();
+        int[] lecturerLessons = problemIndex.getLecturerLessons();
+        for (int lecturerIndex = 0; lecturerIndex < problemIndex.getLecturersCount(); ++lecturerIndex) {
+            penalty += evaluateResourceLessons(problemIndex, lessons, lecturerLessons,
+                    lecturerLessonOffsets[lecturerIndex], lecturerLessonOffsets[lecturerIndex + 1],
+                    lecturerPenaltyOptions, lessonPenalties, 1, buffers);
+        }
+
+        int[] academicGroupLessonOffsets = problemIndex.getAcademicGroupLessonOffsets();
+        int[] academicGroupLessons = problemIndex.getAcademicGroupLessons();
+        for (int academicGroupIndex = 0; academicGroupIndex < problemIndex.getAcademicGroupsCount(); ++academicGroupIndex) {
+            penalty += evaluateResourceLessons(problemIndex, lessons, academicGroupLessons,
+                    academicGroupLessonOffsets[academicGroupIndex], academicGroupLessonOffsets[academicGroupIndex + 1],
+                    academicGroupPenaltyOptions, lessonPenalties, 1, buffers);
+        }
+
+        int[] placeLessonOffsets = placeLessons.offsets();
+        for (int placeIndex = 0; placeIndex < problemIndex.getPlacesCount(); ++placeIndex) {
+            penalty += evaluateResourceLessons(problemIndex, lessons, placeLessons.lessonIndexes(),
+                    placeLessonOffsets[placeIndex], placeLessonOffsets[placeIndex + 1],
+                    placePenaltyOptions, lessonPenalties, 1, buffers);
+        }
+
+        if (problemIndex.getPublishedLessons() != null) {
+            for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+                double movePenalty = calcPublishedLessonMovePenalty(problemIndex, lessonIndex, lessons[lessonIndex],
+                        publishedLessonMovePenalty);
+                penalty += movePenalty;
+                lessonPenalties[lessonIndex] += movePenalty;
+            }
+        }
+
+        return new EvaluatedTimetable(lessons, penalty, lessonPenalties);
+    }
+
+    /**
+     * Evaluates a timetable derived from an already evaluated parent timetable. Only the lecturer, academic group and
+     * place timelines touched by the changed lessons are re-scored: their old contribution is subtracted from the
+     * parent penalties and the new one is added.
+     */
+    public EvaluatedTimetable evaluateTimetable(ProblemIndex problemIndex, EvaluatedTimetable parent,
+                                                long[] lessons, int[] changedLessonIndexes) {
+        return evaluateTimetable(problemIndex, parent, lessons, changedLessonIndexes, new double[lessons.length]);
+    }
+
+    /**
+     * Evaluates a timetable derived from an already evaluated parent timetable into the given lesson penalties buffer
+     */
+    public EvaluatedTimetable evaluateTimetable(ProblemIndex problemIndex, EvaluatedTimetable parent,
+                                                long[] lessons, int[] changedLessonIndexes,
+                                                double[] lessonPenalties) {
+        return evaluateTimetable(problemIndex, parent, lessons, changedLessonIndexes, lessonPenalties,
+                Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Evaluates a derived timetable unless its penalty exceeds the cutoff. The old contributions of all touched
+     * timelines are subtracted first, so that the penalty only grows while the new ones are added, and the evaluation
+     * stops as soon as it exceeds the cutoff.
+     *
+     * @return the evaluated timetable, {@code null} when its penalty exceeds the cutoff, in which case the lesson
+     * penalties buffer is left incomplete
+     */
+    public EvaluatedTimetable evaluateTimetable(ProblemIndex problemIndex, EvaluatedTimetable parent,
+                                                long[] lessons, int[] changedLessonIndexes,
+                                                double[] lessonPenalties, double penaltyCutoff) {
+
+        int[] lessonLecturers = problemIndex.getLessonLecturers();
+        int[] lessonAcademicGroupOffsets = problemIndex.getLessonAcademicGroupOffsets();
+        int[] lessonAcademicGroups = problemIndex.getLessonAcademicGroups();
+
+        long[] parentLessons = parent.getLessons();
+
+        EvaluationBuffers evaluationBuffers = getEvaluationBuffers(problemIndex);
+        ResourceBuffers buffers = evaluationBuffers.resourceBuffers();
+
+        BitSet affectedLecturers = evaluationBuffers.affectedLecturers();
+        BitSet affectedAcademicGroups = evaluationBuffers.affectedAcademicGroups();
+        BitSet affectedPlaces = evaluationBuffers.affectedPlaces();
+        affectedLecturers.clear();
+        affectedAcademicGroups.clear();
+        affectedPlaces.clear();
+
+        for (int lessonIndex : changedLessonIndexes) {
+            long parentLesson = parentLessons[lessonIndex];
+            long lesson = lessons[lessonIndex];
+
+            int parentPlaceIndex = LessonCodec.getPlaceIndex(parentLesson);
+            int placeIndex = LessonCodec.getPlaceIndex(lesson);
+
+            // The place is the only part of the lesson besides its time
+            boolean isTimeChanged = LessonCodec.withPlaceIndex(parentLesson, placeIndex) != lesson;
+
+            if (isTimeChanged) {
+                affectedLecturers.set(lessonLecturers[lessonIndex]);
+                for (int i = lessonAcademicGroupOffsets[lessonIndex]; i < lessonAcademicGroupOffsets[lessonIndex + 1]; ++i) {
+                    affectedAcademicGroups.set(lessonAcademicGroups[i]);
+                }
+            }
+
+            if (isTimeChanged || parentPlaceIndex != placeIndex) {
+                affectedPlaces.set(parentPlaceIndex);
+                affectedPlaces.set(placeIndex);
+            }
+        }
+
+        double penalty = parent.getPenalty();
+        System.arraycopy(parent.getLessonPenalties(), 0, lessonPenalties, 0, lessonPenalties.length);
+
+        int[] lecturerLessonOffsets = problemIndex.getLecturerLessonOffsets();
+        int[] lecturerLessons = problemIndex.getLecturerLessons();
+        int[] academicGroupLessonOffsets = problemIndex.getAcademicGroupLessonOffsets();
+        int[] academicGroupLessons = problemIndex.getAcademicGroupLessons();
+
+        // Lessons of places depend on the timetable, so the lessons of the affected places are grouped for the parent
+        // and the child separately
+        PlaceLessons parentPlaceLessons = null;
+        PlaceLessons placeLessons = null;
+        if (!affectedPlaces.isEmpty()) {
+            parentPlaceLessons = evaluationBuffers.parentPlaceLessons();
+            placeLessons = evaluationBuffers.placeLessons();
+            groupLessonsByPlace(parentLessons, affectedPlaces, parentPlaceLessons);
+            groupLessonsByPlace(lessons, affectedPlaces, placeLessons);
+        }
+
+        penalty = evaluateAffectedResources(problemIndex, parentLessons, lecturerLessons, lecturerLessonOffsets,
+                affectedLecturers, lecturerPenaltyOptions, lessonPenalties, -1, buffers, penalty,
+                Double.POSITIVE_INFINITY);
+        penalty = evaluateAffectedResources(problemIndex, parentLessons, academicGroupLessons,
+                academicGroupLessonOffsets, affectedAcademicGroups, academicGroupPenaltyOptions, lessonPenalties, -1,
+                buffers, penalty, Double.POSITIVE_INFINITY);
+        if (parentPlaceLessons != null) {
+            penalty = evaluateAffectedResources(problemIndex, parentLessons, parentPlaceLessons.lessonIndexes(),
+                    parentPlaceLessons.offsets(), affectedPlaces, placePenaltyOptions, lessonPenalties, -1, buffers,
+                    penalty, Double.POSITIVE_INFINITY);
+        }
+
+        if (problemIndex.getPublishedLessons() != null) {
+            for (int lessonIndex : changedLessonIndexes) {
+                double movePenaltyDelta = calcPublishedLessonMovePenalty(problemIndex, lessonIndex,
+                        lessons[lessonIndex], publishedLessonMovePenalty)
+                        - calcPublishedLessonMovePenalty(problemIndex, lessonIndex, parentLessons[lessonIndex],
+                        publishedLessonMovePenalty);
+                penalty += movePenaltyDelta;
+                lessonPenalties[lessonIndex] += movePenaltyDelta;
+            }
+        }
+
+        // Conflicts of lecturers and academic groups are the most penalized ones with the default options
+        penalty = evaluateAffectedResources(problemIndex, lessons, lecturerLessons, lecturerLessonOffsets,
+                affectedLecturers, lecturerPenaltyOptions, lessonPenalties, 1, buffers, penalty, penaltyCutoff);
+        penalty = evaluateAffectedResources(problemIndex, lessons, academicGroupLessons, academicGroupLessonOffsets,
+                affectedAcademicGroups, academicGroupPenaltyOptions, lessonPenalties, 1, buffers, penalty,
+                penaltyCutoff);
+        if (placeLessons != null) {
+            penalty = evaluateAffectedResources(problemIndex, lessons, placeLessons.lessonIndexes(),
+                    placeLessons.offsets(), affectedPlaces, placePenaltyOptions, lessonPenalties, 1, buffers, penalty,
+                    penaltyCutoff);
+        }
+
+        if (penalty > penaltyCutoff) {
+            return null;
+        }
+
+        long hash = ZobristHash.update(parent.getHash(), parentLessons, lessons, changedLessonIndexes);
+
+        // Subtracting and adding contributions leaves rounding noise where the real penalty is zero
+        if (penalty < PENALTY_EPSILON) {
+            penalty = 0;
+        }
+
+        for (int i = 0; i < lessonPenalties.length; ++i) {
+            if (lessonPenalties[i] < PENALTY_EPSILON) {
+                lessonPenalties[i] = 0;
+            }
+        }
+
+        return new EvaluatedTimetable(lessons, penalty, lessonPenalties, hash);
+    }
+
+    /**
+     * Adds the contributions of the touched timelines of a kind of resources to the penalty with the given sign,
+     * skipping the remaining timelines once the penalty exceeds the cutoff
+     */
+    private double evaluateAffectedResources(ProblemIndex problemIndex, long[] lessons, int[] lessonIndexes,
+                                             int[] offsets, BitSet affectedResources, ResourcePenaltyOptions options,
+                                             double[] lessonPenalties, int sign, ResourceBuffers buffers,
+                                             double penalty, double penaltyCutoff) {
+        for (int resourceIndex = affectedResources.nextSetBit(0); resourceIndex >= 0 && penalty <= penaltyCutoff;
+             resourceIndex = affectedResources.nextSetBit(resourceIndex + 1)) {
+
+            penalty += sign * evaluateResourceLessons(problemIndex, lessons, lessonIndexes, offsets[resourceIndex],
+                    offsets[resourceIndex + 1], options, lessonPenalties, sign, buffers);
+        }
+        return penalty;
+    }
+
+    /**
+     * Creates the occupancy of the timetable resources, which moves the given lessons in place
+     */
+    ResourceOccupancy createResourceOccupancy(ProblemIndex problemIndex, long[] lessons) {
+        return new ResourceOccupancy(problemIndex, lessons, lecturerPenaltyOptions, academicGroupPenaltyOptions,
+                placePenaltyOptions, publishedLessonMovePenalty);
+    }
+
+    /**
+     * Returns the move penalty when the lesson is published and differs from its published version, zero otherwise
+     */
+    static double calcPublishedLessonMovePenalty(ProblemIndex problemIndex, int lessonIndex, long lesson,
+                                                 double movePenalty) {
+        long publishedLesson = problemIndex.getPublishedLessons()[lessonIndex];
+        return publishedLesson != ProblemIndex.NOT_PUBLISHED && publishedLesson != lesson ? movePenalty : 0;
+    }
+
+    private EvaluationBuffers getEvaluationBuffers(ProblemIndex problemIndex) {
+        EvaluationBuffers buffers = evaluationBuffers.get();
+        if (buffers == null || buffers.problemIndex() != problemIndex) {
+            buffers = new EvaluationBuffers(problemIndex);
+            evaluationBuffers.set(buffers);
+        }
+        return buffers;
+    }
+
+    /**
+     * Groups lesson indexes by their places with a counting sort, keeping the ascending order within every place. Only
+     * the lessons of the given places are grouped, the other places are left empty.
+     *
+     * @param places places to group the lessons of, {@code null} for all places
+     */
+    private static void groupLessonsByPlace(long[] lessons, BitSet places, PlaceLessons placeLessons) {
+        int[] offsets = placeLessons.offsets();
+        int placesCount = offsets.length - 1;
+
+        Arrays.fill(offsets, 0);
+        for (long lesson : lessons) {
+            int placeIndex = LessonCodec.getPlaceIndex(lesson);
+            if (places == null || places.get(placeIndex)) {
+                ++offsets[placeIndex + 1];
+            }
+        }
+        for (int i = 1; i <= placesCount; ++i) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        int[] positions = placeLessons.positions();
+        System.arraycopy(offsets, 0, positions, 0, placesCount);
+        int[] lessonIndexes = placeLessons.lessonIndexes();
+        for (int i = 0; i < lessons.length; ++i) {
+            int placeIndex = LessonCodec.getPlaceIndex(lessons[i]);
+            if (places == null || places.get(placeIndex)) {
+                lessonIndexes[positions[placeIndex]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Calculates the penalty of a single lecturer, academic group or place timeline given by the lesson indexes from
+     * {@code from} inclusive to {@code to} exclusive. When lesson penalties are given, the penalty is distributed among
+     * the responsible lessons and added to them with the given sign.
+     *
+     * <p>Lessons are bucketed into the occupancy grid, so the timeline is walked in the order of time in linear time.
+     * Lessons of the same cell conflict in every half of the week occupied more than once, lessons of neighbouring cells
+     * conflict when their time slots conflict and they share a half of the week.
+     */
+    private double evaluateResourceLessons(ProblemIndex problemIndex, long[] lessons, int[] lessonIndexes, int from,
+                                           int to, ResourcePenaltyOptions options, double[] lessonPenalties, int sign,
+                                           ResourceBuffers buffers) {
+        if (from == to) {
+            return 0;
+        }
+
+        int timeSlotsCount = problemIndex.getTimeSlotsCount();
+        int[] timeSlotOrders = problemIndex.getTimeSlotOrders();
+        boolean[][] timeSlotConflicts = problemIndex.getTimeSlotConflicts();
+        boolean[][] timeSlotWindows = problemIndex.getTimeSlotWindows();
+
+        int[] cellLessonHeads = buffers.cellLessonHeads();
+        int[] nextCellLessons = buffers.nextCellLessons();
+
+        int firstCell = Integer.MAX_VALUE;
+        int lastCell = -1;
+        for (int i = from; i < to; ++i) {
+            int lessonIndex = lessonIndexes[i];
+            int cell = getCell(lessons[lessonIndex], timeSlotsCount, timeSlotOrders);
+
+            nextCellLessons[lessonIndex] = cellLessonHeads[cell];
+            cellLessonHeads[cell] = lessonIndex;
+
+            firstCell = Math.min(firstCell, cell);
+            lastCell = Math.max(lastCell, cell);
+        }
+
+        boolean isTimeWindowPenalized = options.timeWindowPenalty() != 0;
+
+        double conflictTimeSlotsCount = 0;
+        double timeWindowCount = 0;
+
+        int[] conflictTimeSlotLessonIndexes = buffers.conflictTimeSlotLessonIndexes();
+        int[] timeWindowLessonIndexes = buffers.timeWindowLessonIndexes();
+        int conflictTimeSlotLessonsCount = 0;
+        int timeWindowLessonsCount = 0;
+
+        for (int dayFirstCell = firstCell - firstCell % timeSlotsCount; dayFirstCell <= lastCell;
+             dayFirstCell += timeSlotsCount) {
+
+            double timeWindowDayCount = 0;
+
+            int prevCell = -1;
+            int prevTimeSlot = 0;
+            int prevNumeratorCount = 0;
+            int prevDenominatorCount = 0;
+            boolean isPrevCellConflicting = false;
+            for (int cell = dayFirstCell; cell < dayFirstCell + timeSlotsCount; ++cell) {
+                int headLessonIndex = cellLessonHeads[cell];
+                if (headLessonIndex == -1) {
+                    continue;
+                }
+
+                // Weekly lessons occupy both halves of the week
+                int numeratorCount = 0;
+                int denominatorCount = 0;
+                for (int lessonIndex = headLessonIndex; lessonIndex != -1; lessonIndex = nextCellLessons[lessonIndex]) {
+                    int lessonPeriodicity = LessonCodec.getPeriodicity(lessons[lessonIndex]);
+                    if (lessonPeriodicity != LessonCodec.DENOMINATOR) {
+                        ++numeratorCount;
+                    }
+                    if (lessonPeriodicity != LessonCodec.NUMERATOR) {
+                        ++denominatorCount;
+                    }
+                }
+
+                double cellConflictTimeSlotsCount =
+                        0.5 * (Math.max(numeratorCount - 1, 0) + Math.max(denominatorCount - 1, 0));
+                conflictTimeSlotsCount += cellConflictTimeSlotsCount;
+                boolean isConflicting = cellConflictTimeSlotsCount > 0;
+
+                int timeSlot = LessonCodec.getTimeSlotIndex(lessons[headLessonIndex]);
+                if (prevCell != -1) {
+                    if (timeSlotConflicts[prevTimeSlot][timeSlot]) {
+                        double neighbourConflictTimeSlotsCount = 0.5 * (
+                                (prevNumeratorCount > 0 && numeratorCount > 0 ? 1 : 0)
+                                        + (prevDenominatorCount > 0 && denominatorCount > 0 ? 1 : 0));
+
+                        if (neighbourConflictTimeSlotsCount > 0) {
+                            conflictTimeSlotsCount += neighbourConflictTimeSlotsCount;
+                            isConflicting = true;
+
+                            if (!isPrevCellConflicting) {
+                                conflictTimeSlotLessonsCount = addCellLessons(buffers, prevCell, prevCell + 1,
+                                        conflictTimeSlotLessonIndexes, conflictTimeSlotLessonsCount);
+                            }
+                        }
+                    }
+
+                    if (isTimeWindowPenalized && timeSlotWindows[prevTimeSlot][timeSlot]) {
+                        ++timeWindowDayCount;
+                    }
+                }
+
+                if (isConflicting) {
+                    conflictTimeSlotLessonsCount = addCellLessons(buffers, cell, cell + 1,
+                            conflictTimeSlotLessonIndexes, conflictTimeSlotLessonsCount);
+                }
+
+                prevCell = cell;
+                prevTimeSlot = timeSlot;
+                prevNumeratorCount = numeratorCount;
+                prevDenominatorCount = denominatorCount;
+                isPrevCellConflicting = isConflicting;
+            }
+
+            if (timeWindowDayCount > 0) {
+                timeWindowDayCount = Math.pow(timeWindowDayCount, options.timeWindowPenaltyDayPower());
+
+                timeWindowCount += timeWindowDayCount;
+
+                timeWindowLessonsCount = addCellLessons(buffers, dayFirstCell, dayFirstCell + timeSlotsCount,
+                        timeWindowLessonIndexes, timeWindowLessonsCount);
+            }
+        }
+
+        for (int i = from; i < to; ++i) {
+            cellLessonHeads[getCell(lessons[lessonIndexes[i]], timeSlotsCount, timeSlotOrders)] = -1;
+        }
+
+        double penalty = 0;
+
+        if (conflictTimeSlotsCount > 0) {
+            conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, options.conflictTimeSlotPenaltyPower());
+
+            double conflictTimeSlotPenalty = conflictTimeSlotsCount * options.conflictTimeSlotPenalty();
+            penalty += conflictTimeSlotPenalty;
+
+            if (lessonPenalties != null) {
+                double conflictTimeSlotPenaltyPerLesson = sign * conflictTimeSlotPenalty / conflictTimeSlotLessonsCount;
+                for (int i = 0; i < conflictTimeSlotLessonsCount; ++i) {
+                    lessonPenalties[conflictTimeSlotLessonIndexes[i]] += conflictTimeSlotPenaltyPerLesson;
+                }
+            }
+        }
+
+        if (timeWindowCount > 0) {
+            timeWindowCount = Math.pow(timeWindowCount, options.timeWindowPenaltyPower());
+
+            double timeWindowPenalty = timeWindowCount * options.timeWindowPenalty();
+            penalty += timeWindowPenalty;
+
+            if (lessonPenalties != null) {
+                double timeWindowPenaltyPerLesson = sign * timeWindowPenalty / timeWindowLessonsCount;
+                for (int i = 0; i < timeWindowLessonsCount; ++i) {
+                    lessonPenalties[timeWindowLessonIndexes[i]] += timeWindowPenaltyPerLesson;
+                }
+            }
+        }
+
+        return penalty;
+    }
+
+    private static int getCell(long lesson, int timeSlotsCount, int[] timeSlotOrders) {
+        return LessonCodec.getDay(lesson) * timeSlotsCount + timeSlotOrders[LessonCodec.getTimeSlotIndex(lesson)];
+    }
+
+    /**
+     * Appends the lessons of the grid cells from {@code fromCell} inclusive to {@code toCell} exclusive
+     */
+    private static int addCellLessons(ResourceBuffers buffers, int fromCell, int toCell, int[] lessonIndexes, int count) {
+        int[] cellLessonHeads = buffers.cellLessonHeads();
+        int[] nextCellLessons = buffers.nextCellLessons();
+
+        for (int cell = fromCell; cell < toCell; ++cell) {
+            for (int lessonIndex = cellLessonHeads[cell]; lessonIndex != -1; lessonIndex = nextCellLessons[lessonIndex]) {
+                lessonIndexes[count++] = lessonIndex;
+            }
+        }
+
+        return count;
+    }
+}
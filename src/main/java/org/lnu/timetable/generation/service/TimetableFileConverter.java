@@ -0,0 +1,148 @@
+package org.lnu.timetable.generation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.Lesson;
+import org.lnu.timetable.generation.model.LessonRequirements;
+import org.lnu.timetable.generation.model.LessonTimeSlot;
+import org.lnu.timetable.generation.model.SolvedTimetable;
+import org.lnu.timetable.generation.model.TimetableRequirementsExample;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.TimetableBinaryFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Converts requirements and solved timetables between JSON and {@link TimetableBinaryFormat}. The direction and the
+ * kind of the file are given by the extensions: {@code .json} and {@code .ttr} for requirements, {@code .json} and
+ * {@code .ttt} for timetables.
+ */
+@Service
+public class TimetableFileConverter {
+    private static final String JSON_FILE_EXTENSION = ".json";
+
+    private final TimetableGenerationDemo timetableGenerationDemo;
+    private final TimetableRequirementsGenerationService timetableRequirementsGenerationService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * File to convert, blank to convert nothing
+     */
+    private final String input;
+    private final String output;
+
+    public TimetableFileConverter(
+            TimetableGenerationDemo timetableGenerationDemo,
+            TimetableRequirementsGenerationService timetableRequirementsGenerationService,
+            ObjectMapper objectMapper,
+
+            @Value("${convert.input}") String input,
+            @Value("${convert.output}") String output
+    ) {
+        this.timetableGenerationDemo = timetableGenerationDemo;
+        this.timetableRequirementsGenerationService = timetableRequirementsGenerationService;
+        this.objectMapper = objectMapper;
+
+        this.input = input;
+        this.output = output;
+    }
+
+    public boolean isConversionConfigured() {
+        return !input.isBlank();
+    }
+
+    public void convert() {
+        convert(Path.of(input), Path.of(output));
+    }
+
+    public void convert(Path input, Path output) {
+        String inputFileName = input.getFileName().toString();
+        String outputFileName = output.getFileName().toString();
+
+        if (inputFileName.endsWith(JSON_FILE_EXTENSION)
+                && outputFileName.endsWith(TimetableBinaryFormat.REQUIREMENTS_FILE_EXTENSION)) {
+            TimetableBinaryFormat.writeRequirements(output,
+                    timetableGenerationDemo.readCompactTimetableRequirements(input));
+        } else if (inputFileName.endsWith(TimetableBinaryFormat.REQUIREMENTS_FILE_EXTENSION)
+                && outputFileName.endsWith(JSON_FILE_EXTENSION)) {
+            timetableRequirementsGenerationService.saveTimetableRequirementsExample(output,
+                    createTimetableRequirementsExample(timetableGenerationDemo.readCompactTimetableRequirements(input)));
+        } else if (inputFileName.endsWith(JSON_FILE_EXTENSION)
+                && outputFileName.endsWith(TimetableBinaryFormat.TIMETABLE_FILE_EXTENSION)) {
+            TimetableBinaryFormat.writeTimetable(output, readSolvedTimetable(input));
+        } else if (inputFileName.endsWith(TimetableBinaryFormat.TIMETABLE_FILE_EXTENSION)
+                && outputFileName.endsWith(JSON_FILE_EXTENSION)) {
+            SolvedTimetable solvedTimetable = TimetableBinaryFormat.readTimetable(input);
+            writeJson(output, LessonCodec.decode(solvedTimetable.getTimetable().getLessons(),
+                    solvedTimetable.getTimeSlots()));
+        } else {
+            throw new RuntimeException("Unsupported conversion of " + input + " to " + output);
+        }
+    }
+
+    private TimetableRequirementsExample createTimetableRequirementsExample(
+            CompactTimetableRequirements requirements) {
+        int[] academicGroupOffsets = requirements.getAcademicGroupOffsets();
+        int[] academicGroupIndexes = requirements.getAcademicGroupIndexes();
+
+        List<LessonRequirements> lessonRequirementsList = new ArrayList<>(requirements.getRequirementsCount());
+        for (int i = 0; i < requirements.getRequirementsCount(); ++i) {
+            Set<Integer> academicGroups = new LinkedHashSet<>();
+            for (int j = academicGroupOffsets[i]; j < academicGroupOffsets[i + 1]; ++j) {
+                academicGroups.add(academicGroupIndexes[j]);
+            }
+
+            lessonRequirementsList.add(new LessonRequirements(requirements.getLecturerIndexes()[i], academicGroups,
+                    requirements.getLessonsCountsPerWeek()[i]));
+        }
+
+        return new TimetableRequirementsExample(requirements.getLecturersCount(),
+                requirements.getAcademicGroupsCount(), requirements.getPlacesCount(), lessonRequirementsList);
+    }
+
+    /**
+     * Reads lessons exported to JSON. Their penalties are not part of the JSON, so they are stored as unknown
+     * ({@link Double#NaN}), and the time slots are the ones of the lessons in the order of time.
+     */
+    private SolvedTimetable readSolvedTimetable(Path input) {
+        Lesson[] lessons;
+        try {
+            lessons = objectMapper.readValue(input.toFile(), Lesson[].class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        List<LessonTimeSlot> timeSlots = Arrays.stream(lessons)
+                .map(Lesson::getTimeSlot)
+                .distinct()
+                .sorted()
+                .toList();
+
+        long[] encodedLessons = new long[lessons.length];
+        for (int i = 0; i < lessons.length; ++i) {
+            encodedLessons[i] = LessonCodec.encode(lessons[i], timeSlots);
+        }
+
+        double[] lessonPenalties = new double[lessons.length];
+        Arrays.fill(lessonPenalties, Double.NaN);
+
+        return new SolvedTimetable(timeSlots, new EvaluatedTimetable(encodedLessons, Double.NaN, lessonPenalties));
+    }
+
+    private void writeJson(Path output, Object value) {
+        try {
+            objectMapper.writeValue(output.toFile(), value);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.lnu.timetable.generation.service;
 
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
 import org.lnu.timetable.generation.model.EvaluatedTimetable;
 import org.lnu.timetable.generation.model.LessonPlace;
 import org.lnu.timetable.generation.model.LessonRequirements;
@@ -8,14 +10,17 @@ import org.lnu.timetable.generation.model.LessonTimeSlot;
 import org.lnu.timetable.generation.model.TimetableRequirements;
 import org.lnu.timetable.generation.model.TimetableRequirementsExample;
 import org.lnu.timetable.generation.model.UniversityBuilding;
+import org.lnu.timetable.generation.util.TimetableBinaryFormat;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
+@Slf4j
 @Service
 @AllArgsConstructor
 public class TimetableGenerationDemo {
@@ -30,6 +35,8 @@ public class TimetableGenerationDemo {
             new LessonTimeSlot(LocalTime.of(19, 40), LocalTime.of(21, 00))
     );
 
+    private final TimetableSolverService timetableSolverService;
+
     private final TimetableGenerationService timetableGenerationService;
 
     private final TimetableRequirementsGenerationService timetableRequirementsGenerationService;
@@ -60,7 +67,7 @@ public class TimetableGenerationDemo {
         );
 
         TimetableRequirements timetableRequirements = new TimetableRequirements(lessonRequirementsList, places, DEFAULT_TIME_SLOTS);
-        EvaluatedTimetable bestTimetable = timetableGenerationService.generateTimetable(timetableRequirements);
+        EvaluatedTimetable bestTimetable = timetableSolverService.generateTimetable(timetableRequirements);
 //        timetableGenerationService.printTimetable(timetableRequirements, bestTimetable);
     }
 
@@ -124,24 +131,35 @@ public class TimetableGenerationDemo {
                 "Example4.json", lecturersCount, academicGroupsCount, placesCount, lessonsCountPerWeek);
     }
 
-    private void processTimetableGenerationExample(TimetableRequirementsExample example) {
-        int lecturersCount = example.getLecturersCount();
-        int academicGroupsCount = example.getAcademicGroupsCount();
+    public TimetableRequirements createTimetableRequirements(TimetableRequirementsExample example) {
         int placesCount = example.getPlacesCount();
-        List<LessonRequirements> lessonRequirementsList = example.getLessonRequirementsList();
-
-        System.out.println("Lecturers count: " + lecturersCount);
-        System.out.println("Academic groups count: " + academicGroupsCount);
-        System.out.println("Places count: " + placesCount);
 
         List<LessonPlace> places = new ArrayList<>(placesCount);
         for (int i = 0; i < placesCount; ++i) {
             places.add(null);
         }
 
-        TimetableRequirements timetableRequirements = new TimetableRequirements(lessonRequirementsList, places, DEFAULT_TIME_SLOTS);
+        return new TimetableRequirements(example.getLessonRequirementsList(), places, DEFAULT_TIME_SLOTS);
+    }
+
+    /**
+     * Reads requirements from a binary file or streams them from a JSON file
+     */
+    public CompactTimetableRequirements readCompactTimetableRequirements(Path pathToFile) {
+        if (pathToFile.getFileName().toString().endsWith(TimetableBinaryFormat.REQUIREMENTS_FILE_EXTENSION)) {
+            return TimetableBinaryFormat.readRequirements(pathToFile, DEFAULT_TIME_SLOTS);
+        }
+        return timetableRequirementsGenerationService.readCompactTimetableRequirements(pathToFile, DEFAULT_TIME_SLOTS);
+    }
+
+    private void processTimetableGenerationExample(TimetableRequirementsExample example) {
+        System.out.println("Lecturers count: " + example.getLecturersCount());
+        System.out.println("Academic groups count: " + example.getAcademicGroupsCount());
+        System.out.println("Places count: " + example.getPlacesCount());
 
-        EvaluatedTimetable timetable = timetableGenerationService.generateTimetable(timetableRequirements);
+        TimetableRequirements timetableRequirements = createTimetableRequirements(example);
 
+        EvaluatedTimetable timetable = timetableSolverService.generateTimetable(timetableRequirements);
+        log.info("Best timetable penalty: {}", timetable.getPenalty());
     }
 }
@@ -1,50 +1,97 @@
 package org.lnu.timetable.generation.service;
 
-import org.lnu.timetable.generation.model.Day;
+import lombok.AllArgsConstructor;
 import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.GenerationCheckpoint;
+import org.lnu.timetable.generation.model.GenerationStatistics;
 import org.lnu.timetable.generation.model.Lesson;
-import org.lnu.timetable.generation.model.LessonPeriodicity;
-import org.lnu.timetable.generation.model.LessonPlace;
-import org.lnu.timetable.generation.model.LessonRequirements;
-import org.lnu.timetable.generation.model.LessonTimeSlot;
+import org.lnu.timetable.generation.model.MigrationTopology;
+import org.lnu.timetable.generation.model.PopulationSeeding;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.SolverType;
 import org.lnu.timetable.generation.model.TimetableRequirements;
-import org.lnu.timetable.generation.util.LessonTimeSlotUtil;
+import org.lnu.timetable.generation.service.GenerationRecorder.Phase;
+import org.lnu.timetable.generation.telemetry.GenerationListener;
+import org.lnu.timetable.generation.util.ConstructiveTimetableUtil;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.RandomTimetableUtil;
+import org.lnu.timetable.generation.util.TimetableBinaryFormat;
+import org.lnu.timetable.generation.util.WorstLessonsSelector;
+import org.lnu.timetable.generation.util.ZobristHash;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Random;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Comparator.comparing;
 
 @Service
-public class TimetableGenerationService {
-    private static final Random random = new Random();
-    private static final Day[] days = Day.values();
+public class TimetableGenerationService implements TimetableSolver {
+    private static final Comparator<EvaluatedTimetable> TIMETABLE_COMPARATOR = comparing(EvaluatedTimetable::getPenalty);
 
-    private static final Comparator<Lesson> LESSON_COMPARATOR = comparing(Lesson::getDay)
-            .thenComparing(Lesson::getTimeSlot)
-            .thenComparing(Lesson::getPeriodicity);
+    /**
+     * A child timetable that is not evaluated yet. It differs from the parent only in the changed lessons.
+     */
+    record Offspring(EvaluatedTimetable parent, long[] lessons, int[] changedLessonIndexes) {
+    }
 
-    private static final Comparator<EvaluatedTimetable> TIMETABLE_COMPARATOR = comparing(EvaluatedTimetable::getPenalty);
+    record CrossoverResult(Offspring child1, Offspring child2) {
+    }
 
-    private record CrossoverResult(EvaluatedTimetable child1, EvaluatedTimetable child2) {
+    /**
+     * An independently evolving sub-population with its own random source. Every generation draws its random source
+     * from the seed left by the previous one, so the state of the island can be checkpointed as a single long.
+     */
+    @AllArgsConstructor
+    private static class Island {
+        private final int index;
+        private final PopulationArena arena;
+        private final FitnessCache fitnessCache;
+        private long randomSeed;
+        private List<EvaluatedTimetable> population;
+        private int generation;
     }
 
-    private final LessonTimeSlotUtil lessonTimeSlotUtil;
+    private final TimetableEvaluationService timetableEvaluationService;
+    private final List<GenerationListener> generationListeners;
+
+    /**
+     * Pool evaluating the offspring of a generation in parallel, {@code null} to evaluate them in the calling thread
+     */
+    private final ForkJoinPool evaluationPool;
+
+    /**
+     * Whether the evaluation of the mutation offspring stops once they are worse than the worst distinct parent
+     */
+    private final boolean isEvaluationCutoffEnabled;
 
     private final int iterationsMaxCount;
     private final int populationInitialSize;
+    private final PopulationSeeding populationSeeding;
+
+    /**
+     * Size of a population with the offspring of a generation and the migrants of the other islands
+     */
+    private final int populationMaxSize;
+
+    private final int islandsCount;
+    private final int migrationInterval;
+    private final int migrantsCount;
+    private final MigrationTopology migrationTopology;
 
     private final double crossoverRate;
     private final double crossoverMinBadGeneRate;
@@ -56,26 +103,39 @@ public class TimetableGenerationService {
     private final double mutationPlaceRate;
     private final double mutationPeriodicityRate;
 
-    private final double lecturerConflictTimeSlotPenalty;
-    private final double lecturerConflictTimeSlotPenaltyPower;
-    private final double lecturerTimeWindowPenalty;
-    private final double lecturerTimeWindowPenaltyPower;
-    private final double lecturerTimeWindowPenaltyDayPower;
+    private final boolean isRepairEnabled;
+
+    /**
+     * Time the repair of the offspring of a generation may take, non-positive for no limit
+     */
+    private final long repairTimeBudgetNanos;
 
-    private final double academicGroupConflictTimeSlotPenalty;
-    private final double academicGroupConflictTimeSlotPenaltyPower;
-    private final double academicGroupTimeWindowPenalty;
-    private final double academicGroupTimeWindowPenaltyPower;
-    private final double academicGroupTimeWindowPenaltyDayPower;
+    /**
+     * File the state of the generation is checkpointed to, {@code null} for no checkpoints
+     */
+    private final Path checkpointFile;
+    private final int checkpointInterval;
 
-    private final double placeConflictTimeSlotPenalty;
-    private final double placeConflictTimeSlotPenaltyPower;
+    /**
+     * Number of the timetables every island remembers the penalties of, 0 to keep the duplicates
+     */
+    private final int fitnessCacheCapacity;
 
     public TimetableGenerationService(
-            LessonTimeSlotUtil lessonTimeSlotUtil,
+            TimetableEvaluationService timetableEvaluationService,
+            ObjectProvider<GenerationListener> generationListeners,
 
             @Value("${iterations.max-count}") int iterationsMaxCount,
             @Value("${population.initial-size}") int populationInitialSize,
+            @Value("${population.seeding}") PopulationSeeding populationSeeding,
+
+            @Value("${population.islands.count}") int islandsCount,
+            @Value("${population.islands.migration.interval}") int migrationInterval,
+            @Value("${population.islands.migration.migrants-count}") int migrantsCount,
+            @Value("${population.islands.migration.topology}") MigrationTopology migrationTopology,
+
+            @Value("${evaluation.parallelism}") int evaluationParallelism,
+            @Value("${evaluation.cutoff.enabled}") boolean isEvaluationCutoffEnabled,
 
             @Value("${crossover.rate}") double crossoverRate,
             @Value("${crossover.rate.min_bad_gene}") double crossoverMinBadGeneRate,
@@ -87,25 +147,36 @@ public class TimetableGenerationService {
             @Value("${mutation.rate.place}") double mutationPlaceRate,
             @Value("${mutation.rate.periodicity}") double mutationPeriodicityRate,
 
-            @Value("${penalty.lecturer.conflict_time_slot}") double lecturerConflictTimeSlotPenalty,
-            @Value("${penalty.lecturer.conflict_time_slot.power}") double lecturerConflictTimeSlotPenaltyPower,
-            @Value("${penalty.lecturer.time_window}") double lecturerTimeWindowPenalty,
-            @Value("${penalty.lecturer.time_window.power}") double lecturerTimeWindowPenaltyPower,
-            @Value("${penalty.lecturer.time_window.power.day}") double lecturerTimeWindowPenaltyDayPower,
+            @Value("${repair.enabled}") boolean isRepairEnabled,
+            @Value("${repair.time-budget-millis}") long repairTimeBudgetMillis,
 
-            @Value("${penalty.academic_group.conflict_time_slot}") double academicGroupConflictTimeSlotPenalty,
-            @Value("${penalty.academic_group.conflict_time_slot.power}") double academicGroupConflictTimeSlotPenaltyPower,
-            @Value("${penalty.academic_group.time_window}") double academicGroupTimeWindowPenalty,
-            @Value("${penalty.academic_group.time_window.power}") double academicGroupTimeWindowPenaltyPower,
-            @Value("${penalty.academic_group.time_window.power.day}") double academicGroupTimeWindowPenaltyDayPower,
+            @Value("${checkpoint.file}") String checkpointFile,
+            @Value("${checkpoint.interval}") int checkpointInterval,
 
-            @Value("${penalty.place.conflict_time_slot}") double placeConflictTimeSlotPenalty,
-            @Value("${penalty.place.conflict_time_slot.power}") double placeConflictTimeSlotPenaltyPower
+            @Value("${fitness-cache.capacity}") int fitnessCacheCapacity
     ) {
-        this.lessonTimeSlotUtil = lessonTimeSlotUtil;
+        // The crossover takes two distinct parents
+        if (populationInitialSize < 2) {
+            throw new RuntimeException("Population initial size " + populationInitialSize + " is less than 2");
+        }
+
+        this.timetableEvaluationService = timetableEvaluationService;
+        this.generationListeners = generationListeners.orderedStream().toList();
+
+        if (evaluationParallelism <= 0) {
+            evaluationParallelism = Runtime.getRuntime().availableProcessors();
+        }
+        this.evaluationPool = evaluationParallelism > 1 ? new ForkJoinPool(evaluationParallelism) : null;
+        this.isEvaluationCutoffEnabled = isEvaluationCutoffEnabled;
 
         this.iterationsMaxCount = iterationsMaxCount;
         this.populationInitialSize = populationInitialSize;
+        this.populationSeeding = populationSeeding;
+
+        this.islandsCount = islandsCount > 0 ? islandsCount : Runtime.getRuntime().availableProcessors();
+        this.migrationInterval = migrationInterval;
+        this.migrantsCount = Math.min(migrantsCount, populationInitialSize);
+        this.migrationTopology = migrationTopology;
 
         this.crossoverRate = crossoverRate;
         this.crossoverMinBadGeneRate = crossoverMinBadGeneRate;
@@ -117,884 +188,762 @@ public class TimetableGenerationService {
         this.mutationPlaceRate = mutationPlaceRate;
         this.mutationPeriodicityRate = mutationPeriodicityRate;
 
-        this.lecturerConflictTimeSlotPenalty = lecturerConflictTimeSlotPenalty;
-        this.lecturerConflictTimeSlotPenaltyPower = lecturerConflictTimeSlotPenaltyPower;
-        this.lecturerTimeWindowPenalty = lecturerTimeWindowPenalty;
-        this.lecturerTimeWindowPenaltyPower = lecturerTimeWindowPenaltyPower;
-        this.lecturerTimeWindowPenaltyDayPower = lecturerTimeWindowPenaltyDayPower;
+        // Mutation also changes the children of the crossover
+        int crossoverOffspringCount = 2 * (int) Math.round(crossoverRate * populationInitialSize);
+        this.populationMaxSize = 2 * (populationInitialSize + crossoverOffspringCount)
+                + this.migrantsCount * (this.islandsCount - 1);
 
-        this.academicGroupConflictTimeSlotPenalty = academicGroupConflictTimeSlotPenalty;
-        this.academicGroupConflictTimeSlotPenaltyPower = academicGroupConflictTimeSlotPenaltyPower;
-        this.academicGroupTimeWindowPenalty = academicGroupTimeWindowPenalty;
-        this.academicGroupTimeWindowPenaltyPower = academicGroupTimeWindowPenaltyPower;
-        this.academicGroupTimeWindowPenaltyDayPower = academicGroupTimeWindowPenaltyDayPower;
+        this.isRepairEnabled = isRepairEnabled;
+        this.repairTimeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(repairTimeBudgetMillis);
 
-        this.placeConflictTimeSlotPenalty = placeConflictTimeSlotPenalty;
-        this.placeConflictTimeSlotPenaltyPower = placeConflictTimeSlotPenaltyPower;
+        this.checkpointFile = checkpointFile.isBlank() ? null : Path.of(checkpointFile);
+        this.checkpointInterval = checkpointInterval;
+
+        this.fitnessCacheCapacity = fitnessCacheCapacity;
     }
 
-    public EvaluatedTimetable generateTimetable(TimetableRequirements timetableRequirements) {
-        // Generate the initial population
-        List<EvaluatedTimetable> population = generateInitialPopulation(timetableRequirements);
+    @Override
+    public SolverType getSolverType() {
+        return SolverType.GENETIC;
+    }
 
-        EvaluatedTimetable bestTimetable = null;
-        double penalty = Double.MAX_VALUE;
-        int i = 0;
-        for (; penalty > 0 && i < iterationsMaxCount; i++) {
-            crossover(timetableRequirements, population);
-            mutation(timetableRequirements, population);
-//            population = repair(timetableRequirements, population);
-            population = selection(population);
-
-            bestTimetable = population.get(0);
-            penalty = bestTimetable.getPenalty();
-//            System.out.println(i + " - penalty: " + penalty);
-            System.out.println(penalty);
-        }
-        System.out.println("i = " + i);
+    /**
+     * Without a time budget the same seed and problem give the same best timetable and convergence trace regardless
+     * of the islands and evaluation parallelism.
+     */
+    @Override
+    public EvaluatedTimetable generateTimetable(ProblemIndex problemIndex, long seed, SolverControl control) {
+        control.recordSeed(seed);
 
-        return bestTimetable;
+        return generateTimetable(problemIndex, seed, control, 0);
     }
 
-    private List<EvaluatedTimetable> generateInitialPopulation(TimetableRequirements timetableRequirements) {
-        List<EvaluatedTimetable> population = new ArrayList<>(populationInitialSize);
-
-        for (int i = 0; i < populationInitialSize; i++) {
-            Lesson[] lessons = generateInitialTimetable(timetableRequirements);
-            EvaluatedTimetable timetable = evaluateTimetable(timetableRequirements, lessons);
-            population.add(timetable);
+    /**
+     * Evolves the islands until a timetable without penalty is found, the iterations run out, the control stops the
+     * generation or the best penalty does not improve for the given number of generations. The best timetable found is
+     * returned.
+     *
+     * @param stagnationGenerations generations without improvement to stop after, checked after every migration
+     *                              interval with islands, non-positive to never stop on stagnation
+     */
+    EvaluatedTimetable generateTimetable(ProblemIndex problemIndex, long seed, SolverControl control,
+                                         int stagnationGenerations) {
+        // Every island gets its own random stream split from the seeded one in the island order
+        SplittableRandom seedRandom = new SplittableRandom(seed);
+
+        // Generate the initial population of every island
+        List<Island> islands = new ArrayList<>(islandsCount);
+        for (int i = 0; i < islandsCount; ++i) {
+            SplittableRandom random = seedRandom.split();
+            List<EvaluatedTimetable> population = generateInitialPopulation(problemIndex, random);
+            islands.add(new Island(i, createPopulationArena(problemIndex), createFitnessCache(population),
+                    random.nextLong(), population, 0));
         }
 
-        return population;
+        return evolveIslands(problemIndex, islands, 0, 0, control, stagnationGenerations);
     }
 
-    private Lesson[] generateInitialTimetable(TimetableRequirements timetableRequirements) {
-        List<LessonRequirements> lessonRequirementsList = timetableRequirements.getLessonRequirementsList();
-        List<LessonTimeSlot> timeSlots = timetableRequirements.getTimeSlots();
-        List<LessonPlace> lessonPlaces = timetableRequirements.getLessonPlaces();
-
-        List<Lesson> lessons = new ArrayList<>();
-        for (int i = 0; i < lessonRequirementsList.size(); ++i) {
-            LessonRequirements lessonRequirements = lessonRequirementsList.get(i);
-            double numberOfClassesPerWeek = lessonRequirements.getLessonsCountPerWeek();
+    /**
+     * Continues the generation from the checkpoint. Without a time budget the best timetable and convergence trace
+     * are the same as of the uninterrupted run, provided that the problem and the options are the same.
+     */
+    public EvaluatedTimetable resumeTimetable(ProblemIndex problemIndex, Path checkpointFile, SolverControl control) {
+        GenerationCheckpoint checkpoint = TimetableBinaryFormat.readCheckpoint(checkpointFile);
+
+        List<List<EvaluatedTimetable>> islandPopulations = checkpoint.getIslandPopulations();
+        int lessonsCount = islandPopulations.get(0).get(0).getLessons().length;
+        if (lessonsCount != problemIndex.getLessonsCount()) {
+            throw new RuntimeException("Checkpoint " + checkpointFile + " has " + lessonsCount
+                    + " lessons instead of " + problemIndex.getLessonsCount());
+        }
 
-            while (numberOfClassesPerWeek > 0) {
-                Day day = getRandomDay();
-                LessonTimeSlot timeSlot = getRandomTimeSlot(timeSlots);
-                int lessonPlaceIndex = getRandomPlace(lessonPlaces);
+        List<Island> islands = new ArrayList<>(islandPopulations.size());
+        for (int i = 0; i < islandPopulations.size(); ++i) {
+            // The cache is restored in its order of use, so that it evicts the same timetables as before
+            FitnessCache fitnessCache = createFitnessCache(List.of());
+            long[] cachedHashes = checkpoint.getIslandCachedHashes()[i];
+            double[] cachedPenalties = checkpoint.getIslandCachedPenalties()[i];
+            for (int j = 0; j < cachedHashes.length; ++j) {
+                fitnessCache.putPenalty(cachedHashes[j], cachedPenalties[j]);
+            }
 
-                LessonPeriodicity lessonPeriodicity = getRandomLessonPeriodicity(numberOfClassesPerWeek);
+            islands.add(new Island(i, createPopulationArena(problemIndex), fitnessCache,
+                    checkpoint.getIslandRandomSeeds()[i], new ArrayList<>(islandPopulations.get(i)),
+                    checkpoint.getIslandGenerations()[i]));
+        }
+        return evolveIslands(problemIndex, islands, checkpoint.getIteration(), checkpoint.getImprovementIteration(),
+                control, 0);
+    }
 
-                Lesson lesson = Lesson.builder()
-                        .requirementsIndex(i)
-                        .day(day)
-                        .timeSlot(timeSlot)
-                        .placeIndex(lessonPlaceIndex)
-                        .periodicity(lessonPeriodicity)
-                        .build();
+    /**
+     * @param i                    generations made before
+     * @param improvementIteration generation of the last improvement of the best penalty
+     */
+    private EvaluatedTimetable evolveIslands(ProblemIndex problemIndex, List<Island> islands, int i,
+                                             int improvementIteration, SolverControl control,
+                                             int stagnationGenerations) {
+        // A single island is evolved in the calling thread generation by generation
+        boolean isIslandModel = islands.size() > 1;
+        int epochGenerationsCount = isIslandModel ? migrationInterval : 1;
+        ExecutorService executorService = isIslandModel ? Executors.newFixedThreadPool(islands.size()) : null;
+
+        int checkpointIteration = i;
+
+        EvaluatedTimetable bestTimetable = getBestTimetable(islands);
+        double penalty = bestTimetable.getPenalty();
+
+        // Closing the writer fails the run when the last checkpoint is not written
+        try (GenerationCheckpointWriter checkpointWriter = checkpointFile != null && checkpointInterval > 0
+                ? new GenerationCheckpointWriter(checkpointFile)
+                : null) {
+            while (penalty > 0 && i < iterationsMaxCount && !control.isStopped()
+                    && (stagnationGenerations <= 0 || i - improvementIteration < stagnationGenerations)) {
+
+                int generationsCount = Math.min(epochGenerationsCount, iterationsMaxCount - i);
+                i += evolveIslands(problemIndex, islands, generationsCount, control, executorService);
+
+                bestTimetable = getBestTimetable(islands);
+                if (bestTimetable.getPenalty() < penalty) {
+                    improvementIteration = i;
+                }
+                penalty = bestTimetable.getPenalty();
 
-                lessons.add(lesson);
+                if (isIslandModel && penalty > 0) {
+                    migrate(islands);
+                }
 
-                --numberOfClassesPerWeek;
+                if (checkpointWriter != null && i - checkpointIteration >= checkpointInterval) {
+                    checkpointWriter.write(createCheckpoint(islands, i, improvementIteration));
+                    checkpointIteration = i;
+                }
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
             }
         }
+        control.recordIterationsCount(i);
 
-        return lessons.toArray(Lesson[]::new);
+        return bestTimetable;
     }
 
-    private EvaluatedTimetable evaluateTimetable(TimetableRequirements timetableRequirements, Lesson[] lessons) {
-        List<LessonRequirements> lessonRequirementsList = timetableRequirements.getLessonRequirementsList();
+    /**
+     * Copies the populations, as the following generations reuse their lists and buffers, so that the checkpoint can
+     * be written while the islands evolve
+     */
+    private GenerationCheckpoint createCheckpoint(List<Island> islands, int i, int improvementIteration) {
+        return new GenerationCheckpoint(i, improvementIteration,
+                islands.stream().mapToLong(island -> island.randomSeed).toArray(),
+                islands.stream().mapToInt(island -> island.generation).toArray(),
+                islands.stream()
+                        .map(island -> island.population.stream().map(TimetableGenerationService::copyTimetable).toList())
+                        .toList(),
+                islands.stream().map(island -> island.fitnessCache.getHashes()).toArray(long[][]::new),
+                islands.stream().map(island -> island.fitnessCache.getPenalties()).toArray(double[][]::new));
+    }
 
-        Map<Integer, Set<Integer>> lecturerLessonsMap = new HashMap<>();
-        Map<Integer, Set<Integer>> academicGroupLessonsMap = new HashMap<>();
-        Map<Integer, Set<Integer>> placeLessonsMap = new HashMap<>();
+    private static EvaluatedTimetable copyTimetable(EvaluatedTimetable timetable) {
+        return new EvaluatedTimetable(timetable.getLessons().clone(), timetable.getPenalty(),
+                timetable.getLessonPenalties().clone(), timetable.getHash());
+    }
 
-        Comparator<Integer> lessonIndexcomparator = (index1, index2) -> {
-            int comparisonResult = LESSON_COMPARATOR.compare(lessons[index1], lessons[index1]);
-            return comparisonResult == 0 ? index1 - index2 : comparisonResult;
-        };
+    /**
+     * Evolves every island for the given number of generations and returns the number of generations made by the
+     * longest running island. An island stops earlier when it finds a timetable without penalty or the control stops
+     * the generation.
+     */
+    private int evolveIslands(ProblemIndex problemIndex, List<Island> islands, int generationsCount,
+                              SolverControl control, ExecutorService executorService) {
+        if (executorService == null) {
+            return evolveIsland(problemIndex, islands.get(0), generationsCount, control);
+        }
 
-        for (int i = 0; i < lessons.length; ++i) {
-            Lesson lesson = lessons[i];
+        List<Callable<Integer>> tasks = islands.stream()
+                .<Callable<Integer>>map(island -> () -> evolveIsland(problemIndex, island, generationsCount, control))
+                .toList();
 
-            LessonRequirements lessonRequirements = lessonRequirementsList.get(lesson.getRequirementsIndex());
-            int lecturerIndex = lessonRequirements.getLecturerIndex();
-            int placeIndex = lesson.getPlaceIndex();
-            Set<Integer> academicGroupIndexes = lessonRequirements.getAcademicGroupIndexes();
+        int maxGenerationsCount = 0;
+        try {
+            for (Future<Integer> future : executorService.invokeAll(tasks)) {
+                maxGenerationsCount = Math.max(maxGenerationsCount, future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
 
+        return maxGenerationsCount;
+    }
 
-            Set<Integer> lecturerLessonIndexes = lecturerLessonsMap.get(lecturerIndex);
-            if (lecturerLessonIndexes == null) {
-                lecturerLessonIndexes = new TreeSet<>(lessonIndexcomparator);
-                lecturerLessonsMap.put(lecturerIndex, lecturerLessonIndexes);
+    private int evolveIsland(ProblemIndex problemIndex, Island island, int generationsCount, SolverControl control) {
+        int i = 0;
+        for (; i < generationsCount && island.population.get(0).getPenalty() > 0 && !control.isStopped(); ++i) {
+            GenerationRecorder recorder = generationListeners.isEmpty()
+                    ? GenerationRecorder.DISABLED
+                    : new GenerationRecorder();
+
+            SplittableRandom random = new SplittableRandom(island.randomSeed);
+            island.population = generation(problemIndex, island.population, random, island.arena,
+                    island.fitnessCache, recorder);
+            island.randomSeed = random.nextLong();
+            ++island.generation;
+
+            if (recorder.isEnabled()) {
+                GenerationStatistics statistics = recorder.createStatistics(island.index, island.generation,
+                        island.population);
+                generationListeners.forEach(listener -> listener.onGeneration(statistics));
             }
-            lecturerLessonIndexes.add(i);
 
-            for (int academicGroupIndex : academicGroupIndexes) {
-                Set<Integer> academicGroupLessonIndexes = academicGroupLessonsMap.get(academicGroupIndex);
-                if (academicGroupLessonIndexes == null) {
-                    academicGroupLessonIndexes = new TreeSet<>(lessonIndexcomparator);
-                    academicGroupLessonsMap.put(academicGroupIndex, academicGroupLessonIndexes);
-                }
-                academicGroupLessonIndexes.add(i);
+            // The buffers of the best timetable are reused once it loses a selection
+            EvaluatedTimetable bestTimetable = island.population.get(0);
+            if (control.isSnapshotDue(bestTimetable.getPenalty())) {
+                control.publishSnapshot(copyTimetable(bestTimetable));
             }
+        }
+        return i;
+    }
 
+    PopulationArena createPopulationArena(ProblemIndex problemIndex) {
+        return new PopulationArena(problemIndex.getLessonsCount(), populationMaxSize);
+    }
 
-            Set<Integer> placeLessonIndexes = placeLessonsMap.get(placeIndex);
-            if (placeLessonIndexes == null) {
-                placeLessonIndexes = new TreeSet<>(lessonIndexcomparator);
-                placeLessonsMap.put(placeIndex, placeLessonIndexes);
-            }
-            placeLessonIndexes.add(i);
+    /**
+     * @return cache of the island with the given initial population, the disabled cache when the capacity is 0
+     */
+    FitnessCache createFitnessCache(List<EvaluatedTimetable> population) {
+        if (fitnessCacheCapacity <= 0) {
+            return FitnessCache.DISABLED;
         }
 
-        double penalty = 0;
-        double[] lessonPenalties = new double[lessons.length];
+        FitnessCache fitnessCache = new FitnessCache(fitnessCacheCapacity);
+        population.forEach(timetable -> fitnessCache.putPenalty(timetable.getHash(), timetable.getPenalty()));
+        return fitnessCache;
+    }
 
-        for (Entry<Integer, Set<Integer>> lecturerLessonsEntry : lecturerLessonsMap.entrySet()) {
-            int lecturerIndex = lecturerLessonsEntry.getKey();
-            Set<Integer> lessonIndexes = lecturerLessonsEntry.getValue();
+    List<EvaluatedTimetable> generation(ProblemIndex problemIndex, List<EvaluatedTimetable> population,
+                                        SplittableRandom random, PopulationArena arena, FitnessCache fitnessCache) {
+        return generation(problemIndex, population, random, arena, fitnessCache, GenerationRecorder.DISABLED);
+    }
 
-            double conflictTimeSlotsCount = 0;
-            double timeWindowCount = 0;
+    private List<EvaluatedTimetable> generation(ProblemIndex problemIndex, List<EvaluatedTimetable> population,
+                                                SplittableRandom random, PopulationArena arena,
+                                                FitnessCache fitnessCache, GenerationRecorder recorder) {
+        int parentsCount = population.size();
 
-            Iterator<Integer> lessonIndexIterator = lessonIndexes.iterator();
-            Lesson prevLesson = null;
-            int firstLessonIndex = 0;
-            List<Integer> conflictTimeSlotLessonIndexes = new ArrayList<>();
-            List<Integer> timeWindowLessonIndexes = new ArrayList<>();
-            while (lessonIndexIterator.hasNext()) {
-                double timeWindowDayCount = 0;
+        // Offspring that cannot survive the selection are dropped before their evaluation
+        LongHashSet populationHashes = null;
+        if (fitnessCache.isEnabled()) {
+            populationHashes = arena.getHashes();
+            populationHashes.clear();
+        }
+        double survivalPenalty = getSurvivalPenalty(population, populationHashes);
 
-                List<Integer> dayLessonIndexes = new ArrayList<>();
-                if (firstLessonIndex != 0) {
-                    dayLessonIndexes.add(firstLessonIndex);
-                }
+        recorder.startPhase();
+        List<Offspring> crossoverOffspring = crossover(population, random, arena);
+        recorder.endPhase(Phase.CROSSOVER);
 
-                while (lessonIndexIterator.hasNext()) {
-                    int lessonIndex = lessonIndexIterator.next();
-                    Lesson lesson = lessons[lessonIndex];
-                    LessonTimeSlot lessonTimeSlot = lesson.getTimeSlot();
-                    LessonPeriodicity lessonPeriodicity = lesson.getPeriodicity();
-
-                    boolean isNewDay = false;
-                    if (prevLesson != null) {
-                        if (lesson.getDay() == prevLesson.getDay()) {
-                            dayLessonIndexes.add(lessonIndex);
-
-                            LessonTimeSlot prevLessonTimeSlot = prevLesson.getTimeSlot();
-                            LessonPeriodicity prevLessonPeriodicity = prevLesson.getPeriodicity();
-
-                            if (lessonTimeSlotUtil.isConflict(prevLessonTimeSlot, lessonTimeSlot)) {
-                                if (lessonPeriodicity == prevLessonPeriodicity) {
-                                    if (lessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                        ++conflictTimeSlotsCount;
-                                        conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                    } else {
-                                        conflictTimeSlotsCount += 0.5;
-                                        conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                    }
-                                } else if (lessonPeriodicity == LessonPeriodicity.WEEKLY || prevLessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                    conflictTimeSlotsCount += 0.5;
-                                    conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                }
-                            }
-
-                            if (lessonTimeSlotUtil.isWindow(prevLessonTimeSlot, lessonTimeSlot)) {
-                                ++timeWindowDayCount;
-                            }
-                        } else {
-                            isNewDay = true;
-                            firstLessonIndex = lessonIndex;
-                        }
-                    }
-
-                    prevLesson = lesson;
-                    if (isNewDay) {
-                        break;
-                    }
-                }
+        if (fitnessCache.isEnabled()) {
+            removeDuplicateOffspring(crossoverOffspring, populationHashes, survivalPenalty, arena, fitnessCache,
+                    recorder);
+        }
+        population.addAll(evaluateOffspring(problemIndex, crossoverOffspring, Double.POSITIVE_INFINITY, arena,
+                recorder));
 
-                if (timeWindowDayCount > 0) {
-                    timeWindowDayCount = Math.pow(timeWindowDayCount, lecturerTimeWindowPenaltyDayPower);
+        // Mutation also changes the children of the crossover, so they have to be evaluated first
+        recorder.startPhase();
+        List<Offspring> mutationOffspring = mutation(problemIndex, population, random, arena);
+        recorder.endPhase(Phase.MUTATION);
 
-                    timeWindowCount += timeWindowDayCount;
+        if (fitnessCache.isEnabled()) {
+            removeDuplicateOffspring(mutationOffspring, populationHashes, survivalPenalty, arena, fitnessCache,
+                    recorder);
+        }
+        // The mutation offspring only compete in the selection, unless the repair changes them before
+        double mutationPenaltyCutoff = isEvaluationCutoffEnabled && !isRepairEnabled
+                ? survivalPenalty
+                : Double.POSITIVE_INFINITY;
+        population.addAll(evaluateOffspring(problemIndex, mutationOffspring, mutationPenaltyCutoff, arena,
+                recorder));
+
+        if (isRepairEnabled) {
+            recorder.startPhase();
+            repair(problemIndex, population.subList(parentsCount, population.size()), arena);
+            recorder.endPhase(Phase.REPAIR);
+        }
 
-                    timeWindowLessonIndexes.addAll(dayLessonIndexes);
-                }
-            }
+        for (EvaluatedTimetable timetable : population.subList(parentsCount, population.size())) {
+            fitnessCache.putPenalty(timetable.getHash(), timetable.getPenalty());
+        }
 
-            if (conflictTimeSlotsCount > 0) {
-                conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, lecturerConflictTimeSlotPenaltyPower);
+        recorder.startPhase();
+        List<EvaluatedTimetable> selectedPopulation = selection(population, arena);
+        recorder.endPhase(Phase.SELECTION);
 
-                double conflictTimeSlotPenalty = conflictTimeSlotsCount * lecturerConflictTimeSlotPenalty;
-                penalty += conflictTimeSlotPenalty;
+        return selectedPopulation;
+    }
 
-                double conflictTimeSlotPenaltyPerLesson = conflictTimeSlotPenalty / conflictTimeSlotLessonIndexes.size();
-                for (int lessonIndex : conflictTimeSlotLessonIndexes) {
-                    lessonPenalties[lessonIndex] += conflictTimeSlotPenaltyPerLesson;
-                }
+    /**
+     * Penalty the offspring have to beat to survive the selection of the generation. With the fitness cache the
+     * selection keeps the copies of a timetable behind the distinct timetables, so only the distinct parents count, and
+     * every distinct child survives while there are fewer distinct parents than the population size.
+     *
+     * @param populationHashes set the hashes of the population are added to, {@code null} without the fitness cache
+     */
+    private double getSurvivalPenalty(List<EvaluatedTimetable> population, LongHashSet populationHashes) {
+        int distinctCount = 0;
+        double worstPenalty = 0;
+        for (EvaluatedTimetable timetable : population) {
+            if (populationHashes == null || populationHashes.add(timetable.getHash())) {
+                ++distinctCount;
+                worstPenalty = Math.max(worstPenalty, timetable.getPenalty());
             }
+        }
 
-            if (timeWindowCount > 0) {
-                timeWindowCount = Math.pow(timeWindowCount, lecturerTimeWindowPenaltyPower);
-
-                double timeWindowPenalty = timeWindowCount * lecturerTimeWindowPenalty;
-                penalty += timeWindowPenalty;
+        return distinctCount < populationInitialSize ? Double.POSITIVE_INFINITY : worstPenalty;
+    }
 
-                double timeWindowPenaltyPerLesson = timeWindowPenalty / timeWindowLessonIndexes.size();
-                for (int lessonIndex : timeWindowLessonIndexes) {
-                    lessonPenalties[lessonIndex] += timeWindowPenaltyPerLesson;
-                }
+    /**
+     * Removes the offspring equal to a timetable of the population or to another child, and the offspring the cache
+     * knows to be no better than the survival penalty, as they cannot survive the selection.
+     *
+     * @param populationHashes hashes of the population and of the offspring kept so far, the kept offspring are added
+     */
+    private void removeDuplicateOffspring(List<Offspring> offspring, LongHashSet populationHashes,
+                                          double survivalPenalty, PopulationArena arena,
+                                          FitnessCache fitnessCache, GenerationRecorder recorder) {
+        offspring.removeIf(child -> {
+            EvaluatedTimetable parent = child.parent();
+            long hash = ZobristHash.update(parent.getHash(), parent.getLessons(), child.lessons(),
+                    child.changedLessonIndexes());
+
+            Double cachedPenalty = fitnessCache.getPenalty(hash);
+            if (cachedPenalty != null && cachedPenalty >= survivalPenalty || !populationHashes.add(hash)) {
+                arena.releaseLessons(child.lessons());
+                recorder.recordDuplicate();
+                return true;
             }
-        }
-
-        for (Entry<Integer, Set<Integer>> academicGroupLessonsEntry : academicGroupLessonsMap.entrySet()) {
-            int academicGroupIndex = academicGroupLessonsEntry.getKey();
-            Set<Integer> lessonIndexes = academicGroupLessonsEntry.getValue();
+            return false;
+        });
+    }
 
-            double conflictTimeSlotsCount = 0;
-            double timeWindowCount = 0;
+    /**
+     * Sends copies of the best timetables of every island to its neighbours according to the migration topology.
+     * The migrants compete with the local timetables in the next selection. Every island gets the copies of the
+     * migrants in its own buffers, and the selections start after all migrants are copied. With the fitness cache the
+     * migrants the island already has are not copied, like the duplicate offspring.
+     */
+    private void migrate(List<Island> islands) {
+        int islandsCount = islands.size();
+
+        List<List<EvaluatedTimetable>> islandMigrants = new ArrayList<>(islandsCount);
+        for (Island island : islands) {
+            islandMigrants.add(new ArrayList<>(island.population.subList(0, migrantsCount)));
+        }
 
-            Iterator<Integer> lessonIndexIterator = lessonIndexes.iterator();
-            Lesson prevLesson = null;
-            int firstLessonIndex = 0;
-            List<Integer> conflictTimeSlotLessonIndexes = new ArrayList<>();
-            List<Integer> timeWindowLessonIndexes = new ArrayList<>();
-            while (lessonIndexIterator.hasNext()) {
-                double timeWindowDayCount = 0;
+        for (int i = 0; i < islandsCount; ++i) {
+            Island island = islands.get(i);
 
-                List<Integer> dayLessonIndexes = new ArrayList<>();
-                if (firstLessonIndex != 0) {
-                    dayLessonIndexes.add(firstLessonIndex);
+            LongHashSet populationHashes = null;
+            if (island.fitnessCache.isEnabled()) {
+                populationHashes = island.arena.getHashes();
+                populationHashes.clear();
+                for (EvaluatedTimetable timetable : island.population) {
+                    populationHashes.add(timetable.getHash());
                 }
+            }
 
-                while (lessonIndexIterator.hasNext()) {
-                    int lessonIndex = lessonIndexIterator.next();
-                    Lesson lesson = lessons[lessonIndex];
-                    LessonTimeSlot lessonTimeSlot = lesson.getTimeSlot();
-                    LessonPeriodicity lessonPeriodicity = lesson.getPeriodicity();
-
-                    boolean isNewDay = false;
-                    if (prevLesson != null) {
-                        if (lesson.getDay() == prevLesson.getDay()) {
-                            dayLessonIndexes.add(lessonIndex);
-
-                            LessonTimeSlot prevLessonTimeSlot = prevLesson.getTimeSlot();
-                            LessonPeriodicity prevLessonPeriodicity = prevLesson.getPeriodicity();
-
-                            if (lessonTimeSlotUtil.isConflict(prevLessonTimeSlot, lessonTimeSlot)) {
-                                if (lessonPeriodicity == prevLessonPeriodicity) {
-                                    if (lessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                        ++conflictTimeSlotsCount;
-                                        conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                    } else {
-                                        conflictTimeSlotsCount += 0.5;
-                                        conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                    }
-                                } else if (lessonPeriodicity == LessonPeriodicity.WEEKLY || prevLessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                    conflictTimeSlotsCount += 0.5;
-                                    conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                }
-                            }
-
-                            if (lessonTimeSlotUtil.isWindow(prevLessonTimeSlot, lessonTimeSlot)) {
-                                ++timeWindowDayCount;
-                            }
-                        } else {
-                            isNewDay = true;
-                            firstLessonIndex = lessonIndex;
+            switch (migrationTopology) {
+                case RING -> addMigrants(island, islandMigrants.get((i + islandsCount - 1) % islandsCount),
+                        populationHashes);
+                case FULLY_CONNECTED -> {
+                    for (int j = 0; j < islandsCount; ++j) {
+                        if (j != i) {
+                            addMigrants(island, islandMigrants.get(j), populationHashes);
                         }
                     }
-
-                    prevLesson = lesson;
-                    if (isNewDay) {
-                        break;
-                    }
-                }
-
-                if (timeWindowDayCount > 0) {
-                    timeWindowDayCount = Math.pow(timeWindowDayCount, academicGroupTimeWindowPenaltyDayPower);
-
-                    timeWindowCount += timeWindowDayCount;
-
-                    timeWindowLessonIndexes.addAll(dayLessonIndexes);
                 }
             }
+        }
 
-            if (conflictTimeSlotsCount > 0) {
-                conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, academicGroupConflictTimeSlotPenaltyPower);
-
-                double conflictTimeSlotPenalty = conflictTimeSlotsCount * academicGroupConflictTimeSlotPenalty;
-                penalty += conflictTimeSlotPenalty;
-
-                double conflictTimeSlotPenaltyPerLesson = conflictTimeSlotPenalty / conflictTimeSlotLessonIndexes.size();
-                for (int lessonIndex : conflictTimeSlotLessonIndexes) {
-                    lessonPenalties[lessonIndex] += conflictTimeSlotPenaltyPerLesson;
-                }
-            }
-
-            if (timeWindowCount > 0) {
-                timeWindowCount = Math.pow(timeWindowCount, academicGroupTimeWindowPenaltyPower);
-
-                double timeWindowPenalty = timeWindowCount * academicGroupTimeWindowPenalty;
-                penalty += timeWindowPenalty;
+        for (Island island : islands) {
+            island.population = selection(island.population, island.arena);
+        }
+    }
 
-                double timeWindowPenaltyPerLesson = timeWindowPenalty / timeWindowLessonIndexes.size();
-                for (int lessonIndex : timeWindowLessonIndexes) {
-                    lessonPenalties[lessonIndex] += timeWindowPenaltyPerLesson;
-                }
+    /**
+     * @param populationHashes hashes of the island population and of the migrants added so far, {@code null} to add
+     *                         all migrants
+     */
+    private void addMigrants(Island island, List<EvaluatedTimetable> migrants, LongHashSet populationHashes) {
+        for (EvaluatedTimetable migrant : migrants) {
+            if (populationHashes != null && !populationHashes.add(migrant.getHash())) {
+                continue;
             }
+            island.population.add(island.arena.copyTimetable(migrant));
+            island.fitnessCache.putPenalty(migrant.getHash(), migrant.getPenalty());
         }
+    }
 
-        for (Entry<Integer, Set<Integer>> placeLessonsEntry : placeLessonsMap.entrySet()) {
-            int placeIndex = placeLessonsEntry.getKey();
-            Set<Integer> lessonIndexes = placeLessonsEntry.getValue();
-
-            double conflictTimeSlotsCount = 0;
-
-            Iterator<Integer> lessonIndexIterator = lessonIndexes.iterator();
-            Lesson prevLesson = null;
-            List<Integer> conflictTimeSlotLessonIndexes = new ArrayList<>();
-            while (lessonIndexIterator.hasNext()) {
-                while (lessonIndexIterator.hasNext()) {
-                    int lessonIndex = lessonIndexIterator.next();
-                    Lesson lesson = lessons[lessonIndex];
-                    LessonTimeSlot lessonTimeSlot = lesson.getTimeSlot();
-                    LessonPeriodicity lessonPeriodicity = lesson.getPeriodicity();
-
-                    boolean isNewDay = false;
-                    if (prevLesson != null) {
-                        LessonTimeSlot prevLessonTimeSlot = prevLesson.getTimeSlot();
-
-                        if (lesson.getDay() == prevLesson.getDay()) {
-                            LessonPeriodicity prevLessonPeriodicity = prevLesson.getPeriodicity();
-
-                            if (lessonTimeSlotUtil.isConflict(prevLessonTimeSlot, lessonTimeSlot)) {
-                                if (lessonPeriodicity == prevLessonPeriodicity) {
-                                    if (lessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                        ++conflictTimeSlotsCount;
-                                        conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                    } else {
-                                        conflictTimeSlotsCount += 0.5;
-                                        conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                    }
-                                } else if (lessonPeriodicity == LessonPeriodicity.WEEKLY || prevLessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                    conflictTimeSlotsCount += 0.5;
-                                    conflictTimeSlotLessonIndexes.add(lessonIndex);
-                                }
-                            }
-                        } else {
-                            isNewDay = true;
-                        }
-                    }
-
-                    prevLesson = lesson;
-                    if (isNewDay) {
-                        break;
-                    }
-                }
-            }
+    private EvaluatedTimetable getBestTimetable(List<Island> islands) {
+        return islands.stream()
+                .map(island -> island.population.get(0))
+                .min(TIMETABLE_COMPARATOR)
+                .orElseThrow();
+    }
 
-            if (conflictTimeSlotsCount > 0) {
-                conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, placeConflictTimeSlotPenaltyPower);
+    List<EvaluatedTimetable> generateInitialPopulation(ProblemIndex problemIndex, SplittableRandom random) {
+        return generateInitialPopulation(problemIndex, random, populationSeeding);
+    }
 
-                double conflictTimeSlotPenalty = conflictTimeSlotsCount * placeConflictTimeSlotPenalty;
-                penalty += conflictTimeSlotPenalty;
+    List<EvaluatedTimetable> generateInitialPopulation(ProblemIndex problemIndex, SplittableRandom random,
+                                                       PopulationSeeding seeding) {
+        List<EvaluatedTimetable> population = new ArrayList<>(populationInitialSize);
 
-                double conflictTimeSlotPenaltyPerLesson = conflictTimeSlotPenalty / conflictTimeSlotLessonIndexes.size();
-                for (int lessonIndex : conflictTimeSlotLessonIndexes) {
-                    lessonPenalties[lessonIndex] += conflictTimeSlotPenaltyPerLesson;
-                }
-            }
+        for (int i = 0; i < populationInitialSize; i++) {
+            long[] lessons = switch (seeding) {
+                case RANDOM -> RandomTimetableUtil.generateTimetable(problemIndex, random);
+                case CONSTRUCTIVE -> ConstructiveTimetableUtil.generateTimetable(problemIndex, random);
+            };
+            EvaluatedTimetable timetable = timetableEvaluationService.evaluateTimetable(problemIndex, lessons);
+            population.add(timetable);
         }
 
-//        return new EvaluatedTimetable(lessons, penalty, lessonPenalties, lecturerLessonsMap, academicGroupLessonsMap, placeLessonsMap);
-        return new EvaluatedTimetable(lessons, penalty, lessonPenalties);
+        // Keep the best timetable first, as after every selection
+        population.sort(TIMETABLE_COMPARATOR);
+
+        return population;
     }
 
-    private void crossover(TimetableRequirements timetableRequirements, List<EvaluatedTimetable> population) {
-        int crossoversCount = (int) Math.round(crossoverRate * population.size());
+    List<Offspring> crossover(List<EvaluatedTimetable> population, SplittableRandom random, PopulationArena arena) {
+        // Parents are chosen among the timetables of the current generation only
+        int populationSize = population.size();
+        int crossoversCount = (int) Math.round(crossoverRate * populationSize);
+
+        List<Offspring> offspring = new ArrayList<>(2 * crossoversCount);
         for (int i = 0; i < crossoversCount; ++i) {
-            int parentIndex1 = random.nextInt(population.size());
-            int parentIndex2 = random.nextInt(population.size());
+            int parentIndex1 = random.nextInt(populationSize);
+            int parentIndex2 = random.nextInt(populationSize);
             while (parentIndex1 == parentIndex2) {
-                parentIndex2 = random.nextInt(population.size());
+                parentIndex2 = random.nextInt(populationSize);
             }
 
             EvaluatedTimetable parent1 = population.get(parentIndex1);
-            EvaluatedTimetable parent2 = population.get(parentIndex1);
+            EvaluatedTimetable parent2 = population.get(parentIndex2);
 
-            CrossoverResult crossoverResult = crossover(timetableRequirements, parent1, parent2);
+            CrossoverResult crossoverResult = crossover(parent1, parent2, random, arena);
 
-            population.add(crossoverResult.child1);
-            population.add(crossoverResult.child2);
+            offspring.add(crossoverResult.child1);
+            offspring.add(crossoverResult.child2);
         }
-    }
-
-    private CrossoverResult crossover(TimetableRequirements timetableRequirements, EvaluatedTimetable parent1, EvaluatedTimetable parent2) {
-        Lesson[] lessons1 = parent1.getLessons();
-        Lesson[] lessons2 = parent2.getLessons();
 
-        double[] lessonPenalties1 = parent1.getLessonPenalties();
-        double[] lessonPenalties2 = parent2.getLessonPenalties();
-
-        Comparator<Integer> parent1LessonPenaltiesComparator = (lessonIndex1, lessonIndex2) ->
-                Double.compare(lessonPenalties1[lessonIndex2], lessonPenalties1[lessonIndex1]);
+        return offspring;
+    }
 
-        Comparator<Integer> parent2LessonPenaltiesComparator = (lessonIndex1, lessonIndex2) ->
-                Double.compare(lessonPenalties2[lessonIndex2], lessonPenalties2[lessonIndex1]);
+    CrossoverResult crossover(EvaluatedTimetable parent1, EvaluatedTimetable parent2, SplittableRandom random,
+                              PopulationArena arena) {
+        long[] lessons1 = parent1.getLessons();
+        long[] lessons2 = parent2.getLessons();
 
         int lessonsCount = lessons1.length;
 
-        Integer[] parent1LessonIndexes = new Integer[lessonsCount];
-        Integer[] parent2LessonIndexes = new Integer[lessonsCount];
-        for (int i = 0; i < parent1LessonIndexes.length; ++i) {
-            parent1LessonIndexes[i] = i;
-            parent2LessonIndexes[i] = i;
-        }
-        Arrays.sort(parent1LessonIndexes, parent1LessonPenaltiesComparator);
-        Arrays.sort(parent2LessonIndexes, parent2LessonPenaltiesComparator);
-
         int crossoverPointMinValue = (int) Math.round(crossoverMinBadGeneRate * lessonsCount);
         int crossoverPointMaxValue = (int) Math.round(crossoverMaxBadGeneRate * lessonsCount);
         int crossoverPoint = crossoverPointMinValue + random.nextInt(crossoverPointMaxValue - crossoverPointMinValue + 1);
 
-        Lesson[] childLessons1 = new Lesson[lessonsCount];
-        Lesson[] childLessons2 = new Lesson[lessonsCount];
-
-        boolean[] lessonIndexMarker = new boolean[lessonsCount];
-        for (int i = 0; i < crossoverPoint; ++i) {
-            int parent1LessonIndex = parent1LessonIndexes[i];
-            int parent2LessonIndex = parent2LessonIndexes[i];
-
-            lessonIndexMarker[parent1LessonIndex] = true;
-            lessonIndexMarker[parent2LessonIndex] = true;
-        }
+        long[] childLessons1 = arena.takeLessons();
+        long[] childLessons2 = arena.takeLessons();
 
+        // The worst lessons of both parents are marked
+        boolean[] lessonIndexMarker = arena.getLessonMarkers();
+        markWorstLessons(parent1, crossoverPoint, lessonIndexMarker, arena.getWorstLessonIndexes());
+        markWorstLessons(parent2, crossoverPoint, lessonIndexMarker, arena.getWorstLessonIndexes());
 
+        int[] markedLessonIndexes = arena.getChangedLessonIndexes();
+        int markedLessonsCount = 0;
         for (int i = 0; i < lessonsCount; ++i) {
             if (lessonIndexMarker[i]) {
-                childLessons1[i] = lessons1[i].clone();
-                childLessons2[i] = lessons2[i].clone();
+                lessonIndexMarker[i] = false;
+
+                childLessons1[i] = lessons1[i];
+                childLessons2[i] = lessons2[i];
+
+                markedLessonIndexes[markedLessonsCount++] = i;
             } else {
-                childLessons1[i] = lessons2[i].clone();
-                childLessons2[i] = lessons1[i].clone();
+                childLessons1[i] = lessons2[i];
+                childLessons2[i] = lessons1[i];
             }
         }
 
-        EvaluatedTimetable child1 = evaluateTimetable(timetableRequirements, childLessons1);
-        EvaluatedTimetable child2 = evaluateTimetable(timetableRequirements, childLessons2);
+        // The first child differs from the second parent only in the marked lessons and vice versa
+        int[] changedLessonIndexes = Arrays.copyOf(markedLessonIndexes, markedLessonsCount);
+        Offspring child1 = new Offspring(parent2, childLessons1, changedLessonIndexes);
+        Offspring child2 = new Offspring(parent1, childLessons2, changedLessonIndexes);
 
         return new CrossoverResult(child1, child2);
     }
 
-    private void mutation(TimetableRequirements timetableRequirements, List<EvaluatedTimetable> population) {
-        List<EvaluatedTimetable> mutatedPopulation = new ArrayList<>();
-        List<LessonTimeSlot> timeSlots = timetableRequirements.getTimeSlots();
-        List<LessonPlace> lessonPlaces = timetableRequirements.getLessonPlaces();
+    private static void markWorstLessons(EvaluatedTimetable timetable, int lessonsCount, boolean[] lessonIndexMarker,
+                                         int[] worstLessonIndexes) {
+        int worstLessonsCount = WorstLessonsSelector.selectWorstLessons(timetable.getLessonPenalties(), lessonsCount,
+                worstLessonIndexes);
+        for (int i = 0; i < worstLessonsCount; ++i) {
+            lessonIndexMarker[worstLessonIndexes[i]] = true;
+        }
+    }
+
+    List<Offspring> mutation(ProblemIndex problemIndex, List<EvaluatedTimetable> population, SplittableRandom random,
+                             PopulationArena arena) {
+        int worstLessonsMaxCount = (int) Math.round(mutationBadGenesRate * problemIndex.getLessonsCount());
+        int[] worstLessonIndexes = arena.getWorstLessonIndexes();
+        int[] mutatedLessonIndexes = arena.getChangedLessonIndexes();
 
+        List<Offspring> offspring = new ArrayList<>();
         population.forEach(timetable -> {
-            boolean isTimetableMutated = false;
+            int mutatedLessonsCount = 0;
 
             double[] lessonPenalties = timetable.getLessonPenalties();
+            long[] lessons = arena.copyLessons(timetable.getLessons());
 
-            Comparator<Integer> lessonPenaltiesComparator = (lessonIndex1, lessonIndex2) ->
-                    Double.compare(lessonPenalties[lessonIndex2], lessonPenalties[lessonIndex1]);
-
-            Lesson[] lessons = Arrays.stream(timetable.getLessons()).map(Lesson::clone).toArray(Lesson[]::new);
-            int lessonsCount = lessons.length;
-
-            Integer[] lessonIndexes = new Integer[lessonsCount];
-            for (int i = 0; i < lessonIndexes.length; ++i) {
-                lessonIndexes[i] = i;
-            }
-            Arrays.sort(lessonIndexes, lessonPenaltiesComparator);
-
-            int worstLessonsCount = (int) Math.round(mutationBadGenesRate * lessonsCount);
+            int worstLessonsCount = WorstLessonsSelector.selectWorstLessons(lessonPenalties, worstLessonsMaxCount,
+                    worstLessonIndexes);
             for (int i = 0; i < worstLessonsCount; ++i) {
-                Integer lessonIndex = lessonIndexes[i];
+                int lessonIndex = worstLessonIndexes[i];
                 if (lessonPenalties[lessonIndex] == 0) {
                     break;
                 }
 
-                Lesson lesson = lessons[lessonIndex];
-                if (random.nextDouble() <= mutationDayRate) {
-                    Day day = getRandomDay();
-                    if (day != lesson.getDay()) {
-                        lesson.setDay(day);
+                long lesson = lessons[lessonIndex];
 
-                        isTimetableMutated = true;
-                    }
+                if (random.nextDouble() <= mutationDayRate) {
+                    lesson = LessonCodec.withDay(lesson, RandomTimetableUtil.getRandomDay(random));
                 }
 
                 if (random.nextDouble() <= mutationTimeSlotRate) {
-                    LessonTimeSlot timeSlot = getRandomTimeSlot(timeSlots);
-                    if (timeSlot != lesson.getTimeSlot()) {
-                        lesson.setTimeSlot(timeSlot);
-
-                        isTimetableMutated = true;
-                    }
+                    lesson = LessonCodec.withTimeSlotIndex(lesson, RandomTimetableUtil.getRandomTimeSlot(random, problemIndex));
                 }
 
                 if (random.nextDouble() <= mutationPlaceRate) {
-                    int lessonPlaceIndex = getRandomPlace(lessonPlaces);
-                    if (lessonPlaceIndex != lesson.getPlaceIndex()) {
-                        lesson.setPlaceIndex(lessonPlaceIndex);
-
-                        isTimetableMutated = true;
-                    }
+                    lesson = LessonCodec.withPlaceIndex(lesson, RandomTimetableUtil.getRandomPlace(random, problemIndex));
                 }
 
-                LessonPeriodicity periodicity = lesson.getPeriodicity();
-                if (periodicity != LessonPeriodicity.WEEKLY) {
+                int periodicity = LessonCodec.getPeriodicity(lesson);
+                if (periodicity != LessonCodec.WEEKLY) {
                     if (random.nextDouble() <= mutationPeriodicityRate) {
-                        lesson.setPeriodicity(periodicity == LessonPeriodicity.NUMERATOR ? LessonPeriodicity.DENOMINATOR : LessonPeriodicity.NUMERATOR);
-
-                        isTimetableMutated = true;
+                        lesson = LessonCodec.withPeriodicity(lesson, periodicity == LessonCodec.NUMERATOR ? LessonCodec.DENOMINATOR : LessonCodec.NUMERATOR);
                     }
                 }
+
+                if (lesson != lessons[lessonIndex]) {
+                    lessons[lessonIndex] = lesson;
+                    mutatedLessonIndexes[mutatedLessonsCount++] = lessonIndex;
+                }
             }
 
-            if (isTimetableMutated) {
-                EvaluatedTimetable mutatedTimetable = evaluateTimetable(timetableRequirements, lessons);
-                mutatedPopulation.add(mutatedTimetable);
+            if (mutatedLessonsCount > 0) {
+                int[] changedLessonIndexes = Arrays.copyOf(mutatedLessonIndexes, mutatedLessonsCount);
+                offspring.add(new Offspring(timetable, lessons, changedLessonIndexes));
+            } else {
+                arena.releaseLessons(lessons);
             }
         });
 
-        population.addAll(mutatedPopulation);
+        return offspring;
     }
 
-    private List<EvaluatedTimetable> repair(TimetableRequirements timetableRequirements, List<EvaluatedTimetable> population) {
-//        List<EvaluatedTimetable> repairedTimetables = new ArrayList<>(population.size());
-//        for (EvaluatedTimetable timetable: population) {
-//            repairedTimetables.add(repair(timetableRequirements, timetable));
-//        }
-//        return repairedTimetables;
-        return population.stream().map(timetable -> repair(timetableRequirements, timetable)).collect(Collectors.toList());
+    List<EvaluatedTimetable> evaluateOffspring(ProblemIndex problemIndex, List<Offspring> offspring,
+                                               PopulationArena arena) {
+        return evaluateOffspring(problemIndex, offspring, Double.POSITIVE_INFINITY, arena);
     }
 
-    private EvaluatedTimetable repair(TimetableRequirements timetableRequirements, EvaluatedTimetable timetable) {
-        double prevPenalty = timetable.getPenalty();
-
-        List<LessonRequirements> lessonRequirementsList = timetableRequirements.getLessonRequirementsList();
-
-        Lesson[] lessons = timetable.getLessons();
-        double[] lessonPenalties = timetable.getLessonPenalties();
-        Map<Integer, Set<Integer>> lecturerLessonsMap = timetable.getLecturerLessonsMap();
-        Map<Integer, Set<Integer>> academicGroupLessonsMap = timetable.getAcademicGroupLessonsMap();
-        Map<Integer, Set<Integer>> placeLessonsMap = timetable.getPlaceLessonsMap();
-
-        Comparator<Integer> lessonPenaltiesComparator = (lessonIndex1, lessonIndex2) ->
-                Double.compare(lessonPenalties[lessonIndex2], lessonPenalties[lessonIndex1]);
-
-        int lessonsCount = lessons.length;
+    List<EvaluatedTimetable> evaluateOffspring(ProblemIndex problemIndex, List<Offspring> offspring,
+                                               double penaltyCutoff, PopulationArena arena) {
+        return evaluateOffspring(problemIndex, offspring, penaltyCutoff, arena, GenerationRecorder.DISABLED);
+    }
 
-        Integer[] lessonIndexes = new Integer[lessonsCount];
-        for (int i = 0; i < lessonIndexes.length; ++i) {
-            lessonIndexes[i] = i;
+    /**
+     * Evaluates the offspring in the evaluation pool. The evaluation does not use random sources, and the results keep
+     * the order of the offspring, so the outcome does not depend on the parallelism. The offspring with a penalty
+     * above the cutoff are rejected and return their buffers to the arena.
+     */
+    private List<EvaluatedTimetable> evaluateOffspring(ProblemIndex problemIndex, List<Offspring> offspring,
+                                                       double penaltyCutoff, PopulationArena arena,
+                                                       GenerationRecorder recorder) {
+        recorder.startPhase();
+
+        List<EvaluatedTimetable> evaluatedOffspring;
+        if (evaluationPool == null || offspring.size() < 2) {
+            evaluatedOffspring = offspring.stream()
+                    .map(child -> evaluateOffspring(problemIndex, child, penaltyCutoff, arena, recorder))
+                    .filter(Objects::nonNull)
+                    .toList();
+        } else {
+            evaluatedOffspring = evaluationPool.submit(() -> offspring.parallelStream()
+                    .map(child -> evaluateOffspring(problemIndex, child, penaltyCutoff, arena, recorder))
+                    .filter(Objects::nonNull)
+                    .toList()
+            ).join();
         }
-        Arrays.sort(lessonIndexes, lessonPenaltiesComparator);
 
-        for (int lessonIndex : lessonIndexes) {
-            if (lessonPenalties[lessonIndex] == 0) {
-                break;
-            }
+        recorder.endPhase(Phase.EVALUATION);
 
-            Lesson lesson = lessons[lessonIndex];
-            LessonRequirements lessonRequirements = lessonRequirementsList.get(lesson.getRequirementsIndex());
+        return evaluatedOffspring;
+    }
 
-            int lecturerIndex = lessonRequirements.getLecturerIndex();
-            Set<Integer> academicGroupIndexes = lessonRequirements.getAcademicGroupIndexes();
-            int placeIndex = lesson.getPlaceIndex();
+    /**
+     * @return the evaluated child, {@code null} when it is rejected
+     */
+    private EvaluatedTimetable evaluateOffspring(ProblemIndex problemIndex, Offspring child, double penaltyCutoff,
+                                                 PopulationArena arena, GenerationRecorder recorder) {
+        long allocatedBytes = recorder.isEnabled() ? GenerationRecorder.getCurrentThreadAllocatedBytes() : 0;
 
-            Set<Integer> lecturerLessonIndexes = lecturerLessonsMap.get(lecturerIndex);
-            List<Set<Integer>> academicGroupLessonIndexesList = academicGroupIndexes.stream()
-                    .map(academicGroupIndex -> academicGroupLessonsMap.get(academicGroupIndex))
-                    .collect(Collectors.toList());
-            Set<Integer> placeLessonIndexes = placeLessonsMap.get(placeIndex);
+        double[] lessonPenalties = arena.takeLessonPenalties();
+        EvaluatedTimetable timetable = timetableEvaluationService.evaluateTimetable(problemIndex, child.parent(),
+                child.lessons(), child.changedLessonIndexes(), lessonPenalties, penaltyCutoff);
 
-            repair(timetableRequirements, lessons, lessonIndex, lecturerLessonIndexes, academicGroupLessonIndexesList,
-                    placeLessonIndexes);
+        if (recorder.isEnabled()) {
+            recorder.recordEvaluation(GenerationRecorder.getCurrentThreadAllocatedBytes() - allocatedBytes);
         }
 
-        EvaluatedTimetable repairedTimetable = evaluateTimetable(timetableRequirements, lessons);
-
-        double penalty = repairedTimetable.getPenalty();
-        if (penalty > prevPenalty) {
-            System.out.println("prevPenalty: " + prevPenalty + ", penalty: " + penalty);
+        if (timetable == null) {
+            arena.releaseLessons(child.lessons());
+            arena.releaseLessonPenalties(lessonPenalties);
+            recorder.recordRejection();
         }
 
-        return repairedTimetable;
+        return timetable;
     }
 
-    private void repair(TimetableRequirements timetableRequirements, Lesson[] lessons, int lessonIndex,
-                        Set<Integer> lecturerLessonIndexes, List<Set<Integer>> academicGroupLessonIndexesList,
-                        Set<Integer> placeLessonIndexes) {
-
-        Lesson lesson = lessons[lessonIndex];
-
-        List<LessonTimeSlot> timeSlots = timetableRequirements.getTimeSlots();
-
-        Day validDay = lesson.getDay();
-        LessonTimeSlot validTimeSlot = lesson.getTimeSlot();
+    /**
+     * Replaces the offspring with their repaired versions, the best offspring first until the time budget runs out
+     */
+    void repair(ProblemIndex problemIndex, List<EvaluatedTimetable> offspring, PopulationArena arena) {
+        long deadlineNanos = repairTimeBudgetNanos > 0 ? System.nanoTime() + repairTimeBudgetNanos : Long.MAX_VALUE;
 
-        double minPenalty = Double.MAX_VALUE;
-        Day minDay = Day.MONDAY;
-        LessonTimeSlot minTimeSlot = timeSlots.get(0);
+        offspring.sort(TIMETABLE_COMPARATOR);
+        for (int i = 0; i < offspring.size() && System.nanoTime() < deadlineNanos; ++i) {
+            offspring.set(i, repair(problemIndex, offspring.get(i), deadlineNanos, arena));
+        }
+    }
 
-        for (Day day : days) {
-            for (LessonTimeSlot timeSlot : timeSlots) {
-                lecturerLessonIndexes.remove(lessonIndex);
-                academicGroupLessonIndexesList.forEach(academicGroupLessonIndexes -> {
-                    academicGroupLessonIndexes.remove(lessonIndex);
-                });
-                placeLessonIndexes.remove(lessonIndex);
+    /**
+     * Moves every penalized lesson, the most penalized first, to the day and time slot that decreases the penalty of
+     * the timetable the most. The repaired timetable replaces the given one, which returns its buffers to the arena.
+     */
+    private EvaluatedTimetable repair(ProblemIndex problemIndex, EvaluatedTimetable timetable, long deadlineNanos,
+                                      PopulationArena arena) {
+        long[] lessons = arena.copyLessons(timetable.getLessons());
+        double[] lessonPenalties = timetable.getLessonPenalties();
 
-                lesson.setDay(day);
-                lesson.setTimeSlot(timeSlot);
+        ResourceOccupancy occupancy = timetableEvaluationService.createResourceOccupancy(problemIndex, lessons);
 
-                lecturerLessonIndexes.add(lessonIndex);
-                academicGroupLessonIndexesList.forEach(academicGroupLessonIndexes -> {
-                    academicGroupLessonIndexes.add(lessonIndex);
-                });
-                placeLessonIndexes.add(lessonIndex);
+        int penalizedLessonsCount = 0;
+        for (double lessonPenalty : lessonPenalties) {
+            if (lessonPenalty > 0) {
+                ++penalizedLessonsCount;
+            }
+        }
 
-                double penalty = calcLocalPenalty(lecturerLessonIndexes, academicGroupLessonIndexesList,
-                        placeLessonIndexes, lessons);
+        int[] penalizedLessonIndexes = new int[penalizedLessonsCount];
+        WorstLessonsSelector.selectWorstLessons(lessonPenalties, penalizedLessonsCount, penalizedLessonIndexes);
 
-                if (penalty < minPenalty) {
-                    minDay = day;
-                    minTimeSlot = timeSlot;
+        int[] movedLessonIndexes = new int[penalizedLessonsCount];
+        int movedLessonsCount = 0;
+        for (int lessonIndex : penalizedLessonIndexes) {
+            if (System.nanoTime() >= deadlineNanos) {
+                break;
+            }
 
-                    minPenalty = penalty;
-                }
+            if (repair(problemIndex, lessons, occupancy, lessonIndex)) {
+                movedLessonIndexes[movedLessonsCount++] = lessonIndex;
             }
         }
 
-        lecturerLessonIndexes.remove(lessonIndex);
-        academicGroupLessonIndexesList.forEach(academicGroupLessonIndexes -> {
-            academicGroupLessonIndexes.remove(lessonIndex);
-        });
-        placeLessonIndexes.remove(lessonIndex);
-
-        lesson.setDay(minDay);
-        lesson.setTimeSlot(minTimeSlot);
-//        lesson.setDay(validDay);
-//        lesson.setTimeSlot(validTimeSlot);
-//        if (minDay != validDay || minTimeSlot != validTimeSlot) {
-//            System.out.println(String.format("minDay = %s, validDay = %s, minTimeSlot = %s, validTimeSlot = %s", minDay, validDay, minTimeSlot, validTimeSlot));
-//        }
-
-        lecturerLessonIndexes.add(lessonIndex);
-        academicGroupLessonIndexesList.forEach(academicGroupLessonIndexes -> {
-            academicGroupLessonIndexes.add(lessonIndex);
-        });
-        placeLessonIndexes.add(lessonIndex);
-    }
+        if (movedLessonsCount == 0) {
+            arena.releaseLessons(lessons);
+            return timetable;
+        }
 
-    private List<EvaluatedTimetable> selection(List<EvaluatedTimetable> population) {
-        population.sort(TIMETABLE_COMPARATOR);
-        return population.subList(0, populationInitialSize);
+        EvaluatedTimetable repairedTimetable = timetableEvaluationService.evaluateTimetable(problemIndex, timetable,
+                lessons, Arrays.copyOf(movedLessonIndexes, movedLessonsCount), arena.takeLessonPenalties());
+        arena.releaseTimetable(timetable);
+
+        return repairedTimetable;
     }
 
-    private double calcLocalPenalty(Set<Integer> lecturerLessonIndexes, List<Set<Integer>> academicGroupLessonIndexesList,
-                                    Set<Integer> placeLessonIndexes, Lesson[] lessons) {
-        double penalty = 0;
-
-        {
-            double conflictTimeSlotsCount = 0;
-            double timeWindowCount = 0;
-
-            Iterator<Integer> lessonIndexIterator = lecturerLessonIndexes.iterator();
-            Lesson prevLesson = null;
-            while (lessonIndexIterator.hasNext()) {
-                double timeWindowDayCount = 0;
-
-                while (lessonIndexIterator.hasNext()) {
-                    int lessonIndex = lessonIndexIterator.next();
-                    Lesson lesson = lessons[lessonIndex];
-                    LessonTimeSlot lessonTimeSlot = lesson.getTimeSlot();
-                    LessonPeriodicity lessonPeriodicity = lesson.getPeriodicity();
-
-                    boolean isNewDay = false;
-                    if (prevLesson != null) {
-                        if (lesson.getDay() == prevLesson.getDay()) {
-                            LessonTimeSlot prevLessonTimeSlot = prevLesson.getTimeSlot();
-                            LessonPeriodicity prevLessonPeriodicity = prevLesson.getPeriodicity();
-
-                            if (lessonTimeSlotUtil.isConflict(prevLessonTimeSlot, lessonTimeSlot)) {
-                                if (lessonPeriodicity == prevLessonPeriodicity) {
-                                    if (lessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                        ++conflictTimeSlotsCount;
-                                    } else {
-                                        conflictTimeSlotsCount += 0.5;
-                                    }
-                                } else if (lessonPeriodicity == LessonPeriodicity.WEEKLY || prevLessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                    conflictTimeSlotsCount += 0.5;
-                                }
-                            }
-
-                            if (lessonTimeSlotUtil.isWindow(prevLessonTimeSlot, lessonTimeSlot)) {
-                                ++timeWindowDayCount;
-                            }
-                        } else {
-                            isNewDay = true;
-                        }
-                    }
+    private boolean repair(ProblemIndex problemIndex, long[] lessons, ResourceOccupancy occupancy, int lessonIndex) {
+        long lesson = lessons[lessonIndex];
 
-                    prevLesson = lesson;
-                    if (isNewDay) {
-                        break;
-                    }
-                }
+        double minPenaltyDelta = 0;
+        long minLesson = lesson;
 
-                if (timeWindowDayCount > 0) {
-                    timeWindowDayCount = Math.pow(timeWindowDayCount, lecturerTimeWindowPenaltyDayPower);
+        for (int day = 0; day < LessonCodec.DAYS_COUNT; ++day) {
+            for (int timeSlot = 0; timeSlot < problemIndex.getTimeSlotsCount(); ++timeSlot) {
+                long movedLesson = LessonCodec.withTimeSlotIndex(LessonCodec.withDay(lesson, day), timeSlot);
+                double penaltyDelta = occupancy.calcMovePenaltyDelta(lessonIndex, movedLesson);
 
-                    timeWindowCount += timeWindowDayCount;
+                if (penaltyDelta < minPenaltyDelta) {
+                    minLesson = movedLesson;
+                    minPenaltyDelta = penaltyDelta;
                 }
             }
-
-            if (conflictTimeSlotsCount > 0) {
-                conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, lecturerConflictTimeSlotPenaltyPower);
-
-                double conflictTimeSlotPenalty = conflictTimeSlotsCount * lecturerConflictTimeSlotPenalty;
-                penalty += conflictTimeSlotPenalty;
-            }
-
-            if (timeWindowCount > 0) {
-                timeWindowCount = Math.pow(timeWindowCount, lecturerTimeWindowPenaltyPower);
-
-                double timeWindowPenalty = timeWindowCount * lecturerTimeWindowPenalty;
-                penalty += timeWindowPenalty;
-            }
         }
 
-        for (Set<Integer> lessonIndexes : academicGroupLessonIndexesList) {
-            double conflictTimeSlotsCount = 0;
-            double timeWindowCount = 0;
-
-            Iterator<Integer> lessonIndexIterator = lessonIndexes.iterator();
-            Lesson prevLesson = null;
-            while (lessonIndexIterator.hasNext()) {
-                double timeWindowDayCount = 0;
-
-                while (lessonIndexIterator.hasNext()) {
-                    int lessonIndex = lessonIndexIterator.next();
-                    Lesson lesson = lessons[lessonIndex];
-                    LessonTimeSlot lessonTimeSlot = lesson.getTimeSlot();
-                    LessonPeriodicity lessonPeriodicity = lesson.getPeriodicity();
-
-                    boolean isNewDay = false;
-                    if (prevLesson != null) {
-                        if (lesson.getDay() == prevLesson.getDay()) {
-                            LessonTimeSlot prevLessonTimeSlot = prevLesson.getTimeSlot();
-                            LessonPeriodicity prevLessonPeriodicity = prevLesson.getPeriodicity();
-
-                            if (lessonTimeSlotUtil.isConflict(prevLessonTimeSlot, lessonTimeSlot)) {
-                                if (lessonPeriodicity == prevLessonPeriodicity) {
-                                    if (lessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                        ++conflictTimeSlotsCount;
-                                    } else {
-                                        conflictTimeSlotsCount += 0.5;
-                                    }
-                                } else if (lessonPeriodicity == LessonPeriodicity.WEEKLY || prevLessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                    conflictTimeSlotsCount += 0.5;
-                                }
-                            }
-
-                            if (lessonTimeSlotUtil.isWindow(prevLessonTimeSlot, lessonTimeSlot)) {
-                                ++timeWindowDayCount;
-                            }
-                        } else {
-                            isNewDay = true;
-                        }
-                    }
+        if (minLesson == lesson) {
+            return false;
+        }
 
-                    prevLesson = lesson;
-                    if (isNewDay) {
-                        break;
-                    }
-                }
+        occupancy.moveLesson(lessonIndex, minLesson);
+        return true;
+    }
 
-                if (timeWindowDayCount > 0) {
-                    timeWindowDayCount = Math.pow(timeWindowDayCount, academicGroupTimeWindowPenaltyDayPower);
+    /**
+     * Keeps the best timetables in the population list, so that the list does not grow over the generations, and
+     * returns the buffers of the others to the arena. With the fitness cache the copies of a timetable are kept only
+     * when there are not enough distinct timetables.
+     */
+    List<EvaluatedTimetable> selection(List<EvaluatedTimetable> population, PopulationArena arena) {
+        population.sort(TIMETABLE_COMPARATOR);
 
-                    timeWindowCount += timeWindowDayCount;
-                }
-            }
+        if (fitnessCacheCapacity > 0) {
+            moveDuplicatesToEnd(population, arena.getHashes());
+        }
 
-            if (conflictTimeSlotsCount > 0) {
-                conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, academicGroupConflictTimeSlotPenaltyPower);
+        List<EvaluatedTimetable> losers = population.subList(populationInitialSize, population.size());
+        losers.forEach(arena::releaseTimetable);
+        losers.clear();
 
-                double conflictTimeSlotPenalty = conflictTimeSlotsCount * academicGroupConflictTimeSlotPenalty;
-                penalty += conflictTimeSlotPenalty;
-            }
-
-            if (timeWindowCount > 0) {
-                timeWindowCount = Math.pow(timeWindowCount, academicGroupTimeWindowPenaltyPower);
+        return population;
+    }
 
-                double timeWindowPenalty = timeWindowCount * academicGroupTimeWindowPenalty;
-                penalty += timeWindowPenalty;
+    /**
+     * Moves the copies of the timetables after the distinct timetables keeping the order of both
+     */
+    private static void moveDuplicatesToEnd(List<EvaluatedTimetable> population, LongHashSet hashes) {
+        hashes.clear();
+        List<EvaluatedTimetable> duplicates = new ArrayList<>();
+
+        int distinctCount = 0;
+        for (EvaluatedTimetable timetable : population) {
+            if (hashes.add(timetable.getHash())) {
+                population.set(distinctCount++, timetable);
+            } else {
+                duplicates.add(timetable);
             }
         }
 
-        {
-            double conflictTimeSlotsCount = 0;
-
-            Iterator<Integer> lessonIndexIterator = placeLessonIndexes.iterator();
-            Lesson prevLesson = null;
-            while (lessonIndexIterator.hasNext()) {
-                while (lessonIndexIterator.hasNext()) {
-                    int lessonIndex = lessonIndexIterator.next();
-                    Lesson lesson = lessons[lessonIndex];
-                    LessonTimeSlot lessonTimeSlot = lesson.getTimeSlot();
-                    LessonPeriodicity lessonPeriodicity = lesson.getPeriodicity();
-
-                    boolean isNewDay = false;
-                    if (prevLesson != null) {
-                        LessonTimeSlot prevLessonTimeSlot = prevLesson.getTimeSlot();
-
-                        if (lesson.getDay() == prevLesson.getDay()) {
-                            LessonPeriodicity prevLessonPeriodicity = prevLesson.getPeriodicity();
-
-                            if (lessonTimeSlotUtil.isConflict(prevLessonTimeSlot, lessonTimeSlot)) {
-                                if (lessonPeriodicity == prevLessonPeriodicity) {
-                                    if (lessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                        ++conflictTimeSlotsCount;
-                                    } else {
-                                        conflictTimeSlotsCount += 0.5;
-                                    }
-                                } else if (lessonPeriodicity == LessonPeriodicity.WEEKLY || prevLessonPeriodicity == LessonPeriodicity.WEEKLY) {
-                                    conflictTimeSlotsCount += 0.5;
-                                }
-                            }
-                        } else {
-                            isNewDay = true;
-                        }
-                    }
-
-                    prevLesson = lesson;
-                    if (isNewDay) {
-                        break;
-                    }
-                }
-            }
-
-            if (conflictTimeSlotsCount > 0) {
-                conflictTimeSlotsCount = Math.pow(conflictTimeSlotsCount, placeConflictTimeSlotPenaltyPower);
-
-                double conflictTimeSlotPenalty = conflictTimeSlotsCount * placeConflictTimeSlotPenalty;
-                penalty += conflictTimeSlotPenalty;
-            }
+        for (EvaluatedTimetable duplicate : duplicates) {
+            population.set(distinctCount++, duplicate);
         }
+    }
 
-        return penalty;
+    public Lesson[] exportLessons(TimetableRequirements timetableRequirements, EvaluatedTimetable timetable) {
+        return LessonCodec.decode(timetable.getLessons(), timetableRequirements.getTimeSlots());
     }
 
     public void printTimetable(TimetableRequirements timetableRequirements, EvaluatedTimetable timetable) {
-        for (Lesson lesson : timetable.getLessons()) {
+        for (Lesson lesson : exportLessons(timetableRequirements, timetable)) {
             System.out.printf("%3d | %9s | %s | %3d | %s \n",
                     lesson.getRequirementsIndex(),
                     lesson.getDay(),
@@ -1004,28 +953,4 @@ public class TimetableGenerationService {
             );
         }
     }
-
-    private LessonPeriodicity getRandomLessonPeriodicity(double numberOfClassesPerWeek) {
-        if (numberOfClassesPerWeek >= 1) {
-            return LessonPeriodicity.WEEKLY;
-        }
-
-        return getRandomLessonPeriodicity();
-    }
-
-    private Day getRandomDay() {
-        return days[random.nextInt(days.length)];
-    }
-
-    private LessonTimeSlot getRandomTimeSlot(List<LessonTimeSlot> timeSlots) {
-        return timeSlots.get(random.nextInt(timeSlots.size()));
-    }
-
-    private int getRandomPlace(List<LessonPlace> lessonPlaces) {
-        return random.nextInt(lessonPlaces.size());
-    }
-
-    private LessonPeriodicity getRandomLessonPeriodicity() {
-        return random.nextBoolean() ? LessonPeriodicity.NUMERATOR : LessonPeriodicity.DENOMINATOR;
-    }
 }
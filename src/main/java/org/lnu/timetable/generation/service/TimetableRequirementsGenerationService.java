@@ -1,9 +1,17 @@
 package org.lnu.timetable.generation.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.AllArgsConstructor;
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
 import org.lnu.timetable.generation.model.LessonRequirements;
+import org.lnu.timetable.generation.model.LessonTimeSlot;
+import org.lnu.timetable.generation.model.SyntheticRequirementsParameters;
 import org.lnu.timetable.generation.model.TimetableRequirementsExample;
 import org.springframework.stereotype.Service;
 
@@ -11,50 +19,323 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 @Service
 @AllArgsConstructor
 public class TimetableRequirementsGenerationService {
 
-    private final String EXAMPLES_FOLDER = "timetable-requirements-examples";
+    private static final double[] LECTURE_LESSONS_COUNTS_PER_WEEK = {1, 1.5, 2};
+    private static final double[] SEMINAR_LESSONS_COUNTS_PER_WEEK = {0.5, 1, 1.5};
+
+    /**
+     * Streams generated before their requirements are written
+     */
+    private static final int SYNTHETIC_STREAMS_BATCH_SIZE = 256;
 
-    private static final Random random = new Random();
+    private final String EXAMPLES_FOLDER = "timetable-requirements-examples";
 
     private final ObjectMapper objectMapper;
 
     public void generateAndSaveRandomTimetableRequirementsExample(String fileName, int lecturersCount,
                                                                   int academicGroupsCount, int placesCount,
                                                                   int lessonsCountPerWeek) {
+        generateAndSaveRandomTimetableRequirementsExample(fileName, lecturersCount, academicGroupsCount, placesCount,
+                lessonsCountPerWeek, new SplittableRandom().nextLong());
+    }
 
-        TimetableRequirementsExample timetableRequirementsExample
-                = generateRandomTimetableRequirements(lecturersCount, academicGroupsCount, placesCount, lessonsCountPerWeek);
+    public void generateAndSaveRandomTimetableRequirementsExample(String fileName, int lecturersCount,
+                                                                  int academicGroupsCount, int placesCount,
+                                                                  int lessonsCountPerWeek, long seed) {
 
+        TimetableRequirementsExample timetableRequirementsExample = generateRandomTimetableRequirements(lecturersCount,
+                academicGroupsCount, placesCount, lessonsCountPerWeek, new SplittableRandom(seed));
+
+        saveTimetableRequirementsExample(Path.of(EXAMPLES_FOLDER, fileName), timetableRequirementsExample);
+    }
+
+    public void saveTimetableRequirementsExample(Path pathToFile,
+                                                 TimetableRequirementsExample timetableRequirementsExample) {
         try {
             String timetableRequirementsExampleStr = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(timetableRequirementsExample);
 
-            Path pathToFile = Path.of(EXAMPLES_FOLDER,fileName);
-            Files.createDirectories(pathToFile.getParent());
+            Files.createDirectories(pathToFile.toAbsolutePath().getParent());
             Files.writeString(pathToFile, timetableRequirementsExampleStr);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Generates requirements of the given shape and writes them in the format of {@link TimetableRequirementsExample}
+     * batch by batch of streams, so that the memory taken does not depend on the size of the requirements. The same
+     * seed gives the same file with and without the parallel generation.
+     */
+    public void generateAndSaveSyntheticTimetableRequirements(Path pathToFile,
+                                                              SyntheticRequirementsParameters parameters, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // The groups of the streams are drawn upfront, as the academic groups count goes before the requirements
+        int streamsCount = parameters.getStreamsCount();
+        int[] streamGroupOffsets = new int[streamsCount + 1];
+        long[] streamSeeds = new long[streamsCount];
+        for (int i = 0; i < streamsCount; ++i) {
+            int groupsCount = parameters.getMinGroupsPerStream()
+                    + random.nextInt(parameters.getMaxGroupsPerStream() - parameters.getMinGroupsPerStream() + 1);
+            streamGroupOffsets[i + 1] = streamGroupOffsets[i] + groupsCount;
+            streamSeeds[i] = random.nextLong();
+        }
+
+        double[] lecturerCumulativeWeights = createLecturerCumulativeWeights(parameters);
+
+        // Every requirements object is written without flushing the file
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try {
+            Files.createDirectories(pathToFile.toAbsolutePath().getParent());
+
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(Files.newOutputStream(pathToFile))) {
+                generator.writeStartObject();
+                generator.writeNumberField("lecturersCount", parameters.getLecturersCount());
+                generator.writeNumberField("academicGroupsCount", streamGroupOffsets[streamsCount]);
+                generator.writeNumberField("placesCount", parameters.getPlacesCount());
+                generator.writeArrayFieldStart("lessonRequirementsList");
+
+                for (int from = 0; from < streamsCount; from += SYNTHETIC_STREAMS_BATCH_SIZE) {
+                    IntStream streamIndexes = IntStream.range(from, Math.min(from + SYNTHETIC_STREAMS_BATCH_SIZE,
+                            streamsCount));
+                    if (parameters.isParallel()) {
+                        streamIndexes = streamIndexes.parallel();
+                    }
+
+                    // The requirements of the streams keep the order of the streams
+                    List<List<LessonRequirements>> streamsRequirements = streamIndexes
+                            .mapToObj(i -> generateStreamRequirements(parameters, streamGroupOffsets[i],
+                                    streamGroupOffsets[i + 1], lecturerCumulativeWeights,
+                                    new SplittableRandom(streamSeeds[i])))
+                            .toList();
+
+                    for (List<LessonRequirements> streamRequirements : streamsRequirements) {
+                        for (LessonRequirements lessonRequirements : streamRequirements) {
+                            writer.writeValue(generator, lessonRequirements);
+                        }
+                    }
+                }
+
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public TimetableRequirementsExample readExampleTimetableRequirementsExample(String fileName) {
+        return readTimetableRequirementsExample(Path.of(EXAMPLES_FOLDER, fileName));
+    }
+
+    public TimetableRequirementsExample readTimetableRequirementsExample(Path pathToFile) {
         try {
-            Path pathToFile = Path.of(EXAMPLES_FOLDER,fileName);
             return objectMapper.readValue(pathToFile.toFile(), TimetableRequirementsExample.class);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Reads requirements in the format of {@link TimetableRequirementsExample} with a streaming parser straight into
+     * the compact form, so that the memory taken by a large file is proportional to the requirements rather than to
+     * the object graph of the file
+     */
+    public CompactTimetableRequirements readCompactTimetableRequirements(Path pathToFile,
+                                                                         List<LessonTimeSlot> timeSlots) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(pathToFile.toFile())) {
+            expectToken(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+            int lecturersCount = 0;
+            int academicGroupsCount = 0;
+            int placesCount = 0;
+            LessonRequirementsBuffer buffer = new LessonRequirementsBuffer();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                switch (fieldName) {
+                    case "lecturersCount" -> lecturersCount = parser.getIntValue();
+                    case "academicGroupsCount" -> academicGroupsCount = parser.getIntValue();
+                    case "placesCount" -> placesCount = parser.getIntValue();
+                    case "lessonRequirementsList" -> {
+                        expectToken(parser, token, JsonToken.START_ARRAY);
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            readLessonRequirements(parser, buffer);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+
+            return buffer.createTimetableRequirements(lecturersCount, academicGroupsCount, placesCount, timeSlots);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void readLessonRequirements(JsonParser parser, LessonRequirementsBuffer buffer) throws IOException {
+        expectToken(parser, parser.currentToken(), JsonToken.START_OBJECT);
+
+        int lecturerIndex = 0;
+        double lessonsCountPerWeek = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            switch (fieldName) {
+                case "lecturerIndex" -> lecturerIndex = parser.getIntValue();
+                case "lessonsCountPerWeek" -> lessonsCountPerWeek = parser.getDoubleValue();
+                case "academicGroupIndexes" -> {
+                    expectToken(parser, token, JsonToken.START_ARRAY);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        buffer.addAcademicGroup(parser.getIntValue());
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        buffer.addLessonRequirements(lecturerIndex, lessonsCountPerWeek);
+    }
+
+    private static void expectToken(JsonParser parser, JsonToken token, JsonToken expectedToken) {
+        if (token != expectedToken) {
+            throw new RuntimeException("Expected " + expectedToken + " but got " + token + " at "
+                    + parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * Growing primitive arrays of the requirements read so far. Academic groups are added before the rest of their
+     * requirements, as the fields of a JSON object may come in any order.
+     */
+    private static class LessonRequirementsBuffer {
+        private int[] lecturerIndexes = new int[16];
+        private int[] academicGroupOffsets = new int[17];
+        private int[] academicGroupIndexes = new int[16];
+        private double[] lessonsCountsPerWeek = new double[16];
+
+        private int requirementsCount;
+        private int academicGroupIndexesCount;
+
+        void addAcademicGroup(int academicGroupIndex) {
+            if (academicGroupIndexesCount == academicGroupIndexes.length) {
+                academicGroupIndexes = Arrays.copyOf(academicGroupIndexes, 2 * academicGroupIndexesCount);
+            }
+            academicGroupIndexes[academicGroupIndexesCount++] = academicGroupIndex;
+        }
+
+        /**
+         * Completes the requirements of the academic groups added since the previous requirements. The groups are
+         * sorted and deduplicated like a set.
+         */
+        void addLessonRequirements(int lecturerIndex, double lessonsCountPerWeek) {
+            if (requirementsCount == lecturerIndexes.length) {
+                int capacity = 2 * requirementsCount;
+                lecturerIndexes = Arrays.copyOf(lecturerIndexes, capacity);
+                academicGroupOffsets = Arrays.copyOf(academicGroupOffsets, capacity + 1);
+                lessonsCountsPerWeek = Arrays.copyOf(lessonsCountsPerWeek, capacity);
+            }
+
+            int from = academicGroupOffsets[requirementsCount];
+            Arrays.sort(academicGroupIndexes, from, academicGroupIndexesCount);
+
+            int to = from;
+            for (int i = from; i < academicGroupIndexesCount; ++i) {
+                if (i == from || academicGroupIndexes[i] != academicGroupIndexes[to - 1]) {
+                    academicGroupIndexes[to++] = academicGroupIndexes[i];
+                }
+            }
+            academicGroupIndexesCount = to;
+
+            lecturerIndexes[requirementsCount] = lecturerIndex;
+            lessonsCountsPerWeek[requirementsCount] = lessonsCountPerWeek;
+            academicGroupOffsets[++requirementsCount] = academicGroupIndexesCount;
+        }
+
+        CompactTimetableRequirements createTimetableRequirements(int lecturersCount, int academicGroupsCount,
+                                                                 int placesCount, List<LessonTimeSlot> timeSlots) {
+            return new CompactTimetableRequirements(lecturersCount, academicGroupsCount, placesCount, timeSlots,
+                    Arrays.copyOf(lecturerIndexes, requirementsCount),
+                    Arrays.copyOf(academicGroupOffsets, requirementsCount + 1),
+                    Arrays.copyOf(academicGroupIndexes, academicGroupIndexesCount),
+                    Arrays.copyOf(lessonsCountsPerWeek, requirementsCount));
+        }
+    }
+
+    /**
+     * A lecture for the whole stream and the seminars of its groups for every course of the stream
+     *
+     * @param fromGroupIndex the first academic group of the stream
+     * @param toGroupIndex   the academic group after the last one of the stream
+     */
+    private List<LessonRequirements> generateStreamRequirements(SyntheticRequirementsParameters parameters,
+                                                                int fromGroupIndex, int toGroupIndex,
+                                                                double[] lecturerCumulativeWeights,
+                                                                SplittableRandom random) {
+        Set<Integer> streamGroupIndexes = new HashSet<>();
+        for (int i = fromGroupIndex; i < toGroupIndex; ++i) {
+            streamGroupIndexes.add(i);
+        }
+
+        List<LessonRequirements> lessonRequirementsList = new ArrayList<>();
+        for (int course = 0; course < parameters.getCoursesPerStream(); ++course) {
+            lessonRequirementsList.add(new LessonRequirements(getRandomLecturer(lecturerCumulativeWeights, random),
+                    streamGroupIndexes, LECTURE_LESSONS_COUNTS_PER_WEEK[random.nextInt(
+                            LECTURE_LESSONS_COUNTS_PER_WEEK.length)]));
+
+            double seminarLessonsCountPerWeek = SEMINAR_LESSONS_COUNTS_PER_WEEK[random.nextInt(
+                    SEMINAR_LESSONS_COUNTS_PER_WEEK.length)];
+
+            for (int i = fromGroupIndex; i < toGroupIndex; ++i) {
+                Set<Integer> academicGroupIndexes = new HashSet<>();
+                academicGroupIndexes.add(i);
+                if (i + 1 < toGroupIndex && random.nextDouble() < parameters.getSharedSeminarRate()) {
+                    academicGroupIndexes.add(++i);
+                }
+
+                lessonRequirementsList.add(new LessonRequirements(
+                        getRandomLecturer(lecturerCumulativeWeights, random), academicGroupIndexes,
+                        seminarLessonsCountPerWeek));
+            }
+        }
+
+        return lessonRequirementsList;
+    }
+
+    private static double[] createLecturerCumulativeWeights(SyntheticRequirementsParameters parameters) {
+        int lecturersCount = parameters.getLecturersCount();
+
+        double[] cumulativeWeights = new double[lecturersCount];
+        double cumulativeWeight = 0;
+        for (int i = 0; i < lecturersCount; ++i) {
+            double exponent = lecturersCount > 1 ? (double) i / (lecturersCount - 1) : 0;
+            cumulativeWeight += Math.pow(parameters.getLecturerLoadRatio(), -exponent);
+            cumulativeWeights[i] = cumulativeWeight;
+        }
+        return cumulativeWeights;
+    }
+
+    private static int getRandomLecturer(double[] lecturerCumulativeWeights, SplittableRandom random) {
+        double weight = random.nextDouble() * lecturerCumulativeWeights[lecturerCumulativeWeights.length - 1];
+
+        int index = Arrays.binarySearch(lecturerCumulativeWeights, weight);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
     private TimetableRequirementsExample generateRandomTimetableRequirements(int lecturersCount, int academicGroupsCount,
-                                                    int placesCount, int lessonsCountPerWeek) {
+                                                    int placesCount, int lessonsCountPerWeek, SplittableRandom random) {
 
         List<LessonRequirements> lessonRequirementsList = new ArrayList<>(lessonsCountPerWeek);
         double unusedLessonsCount = lessonsCountPerWeek;
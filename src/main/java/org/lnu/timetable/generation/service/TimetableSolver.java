@@ -0,0 +1,21 @@
+package org.lnu.timetable.generation.service;
+
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.SolverType;
+
+/**
+ * An optimizer searching for the timetable with the lowest penalty, selected by its type in
+ * {@link TimetableSolverService}
+ */
+public interface TimetableSolver {
+
+    SolverType getSolverType();
+
+    /**
+     * Generates a timetable, returning the best one found so far when the control stops the generation. Without a time
+     * budget the same seed and problem give the same best timetable. A re-solve starts from the published lessons of
+     * the problem.
+     */
+    EvaluatedTimetable generateTimetable(ProblemIndex problemIndex, long seed, SolverControl control);
+}
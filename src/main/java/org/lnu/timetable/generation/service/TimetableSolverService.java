@@ -0,0 +1,198 @@
+package org.lnu.timetable.generation.service;
+
+import jakarta.annotation.PreDestroy;
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.Lesson;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.SolverType;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.model.TimetableRequirementsChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+@Service
+public class TimetableSolverService {
+    private final ProblemIndexService problemIndexService;
+    private final TimetableGenerationService timetableGenerationService;
+    private final Map<SolverType, TimetableSolver> solvers = new EnumMap<>(SolverType.class);
+
+    private final SolverType solverType;
+
+    /**
+     * Time budget of the runs without an explicit one, {@code null} for no limit
+     */
+    private final Duration timeBudget;
+
+    /**
+     * Seed of the runs without an explicit seed, {@code null} to use a new random seed for every run
+     */
+    private final Long seed;
+
+    /**
+     * Minimal time between two published snapshots of an asynchronous generation
+     */
+    private final Duration snapshotInterval;
+
+    /**
+     * Runs the asynchronous generations, one thread per running generation
+     */
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    public TimetableSolverService(
+            ProblemIndexService problemIndexService,
+            TimetableGenerationService timetableGenerationService,
+            List<TimetableSolver> solvers,
+
+            @Value("${solver.type}") SolverType solverType,
+            @Value("${solver.time-budget-millis}") long timeBudgetMillis,
+            @Value("${generation.seed}") Long seed,
+            @Value("${solver.snapshot-interval-millis}") long snapshotIntervalMillis
+    ) {
+        this.problemIndexService = problemIndexService;
+        this.timetableGenerationService = timetableGenerationService;
+        solvers.forEach(solver -> this.solvers.put(solver.getSolverType(), solver));
+
+        this.solverType = solverType;
+        this.timeBudget = timeBudgetMillis > 0 ? Duration.ofMillis(timeBudgetMillis) : null;
+        this.seed = seed;
+        this.snapshotInterval = Duration.ofMillis(snapshotIntervalMillis);
+    }
+
+    public EvaluatedTimetable generateTimetable(TimetableRequirements timetableRequirements) {
+        return generateTimetable(timetableRequirements, solverType);
+    }
+
+    /**
+     * @param timeBudget wall-clock time the generation may take, {@code null} for no limit
+     */
+    public EvaluatedTimetable generateTimetable(TimetableRequirements timetableRequirements, Duration timeBudget) {
+        return generateTimetable(timetableRequirements, solverType, getSeed(), timeBudget);
+    }
+
+    /**
+     * @param timeBudget wall-clock time the generation may take, {@code null} for no limit
+     */
+    public EvaluatedTimetable generateTimetable(CompactTimetableRequirements timetableRequirements,
+                                                Duration timeBudget) {
+        return generateTimetable(timetableRequirements, new SolverControl(timeBudget));
+    }
+
+    /**
+     * @param control control of the run, which records the seed and the iterations count of the run
+     */
+    public EvaluatedTimetable generateTimetable(CompactTimetableRequirements timetableRequirements,
+                                                SolverControl control) {
+        ProblemIndex problemIndex = problemIndexService.createProblemIndex(timetableRequirements);
+        return getSolver(solverType).generateTimetable(problemIndex, getSeed(), control);
+    }
+
+    public EvaluatedTimetable generateTimetable(TimetableRequirements timetableRequirements, SolverType solverType) {
+        return generateTimetable(timetableRequirements, solverType, getSeed());
+    }
+
+    public EvaluatedTimetable generateTimetable(TimetableRequirements timetableRequirements, SolverType solverType,
+                                                long seed) {
+        return generateTimetable(timetableRequirements, solverType, seed, timeBudget);
+    }
+
+    /**
+     * @param timeBudget wall-clock time the generation may take, {@code null} for no limit
+     */
+    public EvaluatedTimetable generateTimetable(TimetableRequirements timetableRequirements, SolverType solverType,
+                                                long seed, Duration timeBudget) {
+        ProblemIndex problemIndex = problemIndexService.createProblemIndex(timetableRequirements);
+        return getSolver(solverType).generateTimetable(problemIndex, seed, new SolverControl(timeBudget));
+    }
+
+    public EvaluatedTimetable resolveTimetable(TimetableRequirements timetableRequirements, Lesson[] previousLessons,
+                                               TimetableRequirementsChange change) {
+        return resolveTimetable(timetableRequirements, previousLessons, change, solverType, getSeed(), timeBudget);
+    }
+
+    /**
+     * Generates a timetable of the changed requirements starting from the previous timetable. Only the lessons
+     * affected by the change are rescheduled, the other lessons are moved only when it outweighs the penalty of moving
+     * a published lesson.
+     *
+     * @param previousLessons published timetable of the previous requirements
+     * @param timeBudget      wall-clock time the generation may take, {@code null} for no limit
+     */
+    public EvaluatedTimetable resolveTimetable(TimetableRequirements timetableRequirements, Lesson[] previousLessons,
+                                               TimetableRequirementsChange change, SolverType solverType, long seed,
+                                               Duration timeBudget) {
+        ProblemIndex problemIndex = problemIndexService.createProblemIndex(timetableRequirements, previousLessons,
+                change);
+        return getSolver(solverType).generateTimetable(problemIndex, seed, new SolverControl(timeBudget));
+    }
+
+    public EvaluatedTimetable resumeTimetable(TimetableRequirements timetableRequirements, Path checkpointFile) {
+        return resumeTimetable(timetableRequirements, checkpointFile, timeBudget);
+    }
+
+    /**
+     * Continues an interrupted genetic algorithm run from its latest checkpoint
+     *
+     * @param timetableRequirements requirements of the interrupted run
+     * @param timeBudget            wall-clock time the rest of the generation may take, {@code null} for no limit
+     */
+    public EvaluatedTimetable resumeTimetable(TimetableRequirements timetableRequirements, Path checkpointFile,
+                                              Duration timeBudget) {
+        ProblemIndex problemIndex = problemIndexService.createProblemIndex(timetableRequirements);
+        return timetableGenerationService.resumeTimetable(problemIndex, checkpointFile, new SolverControl(timeBudget));
+    }
+
+    public SolverJob generateTimetableAsync(TimetableRequirements timetableRequirements,
+                                            Consumer<EvaluatedTimetable> snapshotConsumer) {
+        return generateTimetableAsync(timetableRequirements, solverType, getSeed(), timeBudget, snapshotConsumer);
+    }
+
+    /**
+     * Starts the generation in the background. The best timetables found so far are passed to the snapshot consumer
+     * at most once per snapshot interval.
+     *
+     * @param timeBudget       wall-clock time the generation may take, {@code null} for no limit
+     * @param snapshotConsumer receives the improving best timetables in the solver threads, {@code null} for none
+     */
+    public SolverJob generateTimetableAsync(TimetableRequirements timetableRequirements, SolverType solverType,
+                                            long seed, Duration timeBudget,
+                                            Consumer<EvaluatedTimetable> snapshotConsumer) {
+        TimetableSolver solver = getSolver(solverType);
+        SolverControl control = new SolverControl(timeBudget, snapshotConsumer, snapshotInterval);
+
+        CompletableFuture<EvaluatedTimetable> result = CompletableFuture.supplyAsync(() -> {
+            ProblemIndex problemIndex = problemIndexService.createProblemIndex(timetableRequirements);
+            return solver.generateTimetable(problemIndex, seed, control);
+        }, executorService);
+
+        return new SolverJob(result, control);
+    }
+
+    private long getSeed() {
+        return seed != null ? seed : new SplittableRandom().nextLong();
+    }
+
+    private TimetableSolver getSolver(SolverType solverType) {
+        TimetableSolver solver = solvers.get(solverType);
+        if (solver == null) {
+            throw new RuntimeException("No solver of type " + solverType);
+        }
+        return solver;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
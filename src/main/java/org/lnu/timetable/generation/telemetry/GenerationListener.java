@@ -0,0 +1,11 @@
+package org.lnu.timetable.generation.telemetry;
+
+import org.lnu.timetable.generation.model.GenerationStatistics;
+
+/**
+ * Receives the statistics of every generation. Islands evolve in parallel, so implementations must be thread-safe.
+ * Statistics are not collected at all when no listener is registered.
+ */
+public interface GenerationListener {
+    void onGeneration(GenerationStatistics statistics);
+}
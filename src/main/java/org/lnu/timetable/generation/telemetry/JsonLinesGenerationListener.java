@@ -0,0 +1,47 @@
+package org.lnu.timetable.generation.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.lnu.timetable.generation.model.GenerationStatistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends the statistics of every generation to a file as one JSON object per line. Every line is flushed, so that the
+ * file can be followed during a long run and keeps the generations made before the run is killed.
+ */
+public class JsonLinesGenerationListener implements GenerationListener, AutoCloseable {
+    private final ObjectMapper objectMapper;
+    private final BufferedWriter writer;
+
+    public JsonLinesGenerationListener(ObjectMapper objectMapper, Path pathToFile) {
+        this.objectMapper = objectMapper;
+
+        try {
+            Path parent = pathToFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            writer = Files.newBufferedWriter(pathToFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void onGeneration(GenerationStatistics statistics) {
+        try {
+            writer.write(objectMapper.writeValueAsString(statistics));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,87 @@
+package org.lnu.timetable.generation.telemetry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.lnu.timetable.generation.model.GenerationStatistics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the statistics of every generation as Micrometer meters. The penalty and diversity gauges show the
+ * latest reported generation of any island.
+ */
+public class MicrometerGenerationListener implements GenerationListener {
+    private final Timer crossoverTimer;
+    private final Timer mutationTimer;
+    private final Timer repairTimer;
+    private final Timer evaluationTimer;
+    private final Timer selectionTimer;
+
+    private final Counter evaluationsCounter;
+    private final Counter rejectionsCounter;
+    private final Counter duplicatesCounter;
+    private final DistributionSummary allocatedBytesSummary;
+
+    private volatile double bestPenalty;
+    private volatile double meanPenalty;
+    private volatile double worstPenalty;
+    private volatile double diversity;
+
+    public MicrometerGenerationListener(MeterRegistry meterRegistry) {
+        crossoverTimer = createPhaseTimer(meterRegistry, "crossover");
+        mutationTimer = createPhaseTimer(meterRegistry, "mutation");
+        repairTimer = createPhaseTimer(meterRegistry, "repair");
+        evaluationTimer = createPhaseTimer(meterRegistry, "evaluation");
+        selectionTimer = createPhaseTimer(meterRegistry, "selection");
+
+        evaluationsCounter = Counter.builder("timetable.generation.evaluations")
+                .register(meterRegistry);
+        rejectionsCounter = Counter.builder("timetable.generation.rejections")
+                .register(meterRegistry);
+        duplicatesCounter = Counter.builder("timetable.generation.duplicates")
+                .register(meterRegistry);
+        allocatedBytesSummary = DistributionSummary.builder("timetable.generation.allocated")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        Gauge.builder("timetable.generation.penalty", this, listener -> listener.bestPenalty)
+                .tag("statistic", "best")
+                .register(meterRegistry);
+        Gauge.builder("timetable.generation.penalty", this, listener -> listener.meanPenalty)
+                .tag("statistic", "mean")
+                .register(meterRegistry);
+        Gauge.builder("timetable.generation.penalty", this, listener -> listener.worstPenalty)
+                .tag("statistic", "worst")
+                .register(meterRegistry);
+        Gauge.builder("timetable.generation.diversity", this, listener -> listener.diversity)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onGeneration(GenerationStatistics statistics) {
+        crossoverTimer.record(statistics.getCrossoverNanos(), TimeUnit.NANOSECONDS);
+        mutationTimer.record(statistics.getMutationNanos(), TimeUnit.NANOSECONDS);
+        repairTimer.record(statistics.getRepairNanos(), TimeUnit.NANOSECONDS);
+        evaluationTimer.record(statistics.getEvaluationNanos(), TimeUnit.NANOSECONDS);
+        selectionTimer.record(statistics.getSelectionNanos(), TimeUnit.NANOSECONDS);
+
+        evaluationsCounter.increment(statistics.getEvaluationsCount());
+        rejectionsCounter.increment(statistics.getRejectionsCount());
+        duplicatesCounter.increment(statistics.getDuplicatesCount());
+        allocatedBytesSummary.record(statistics.getAllocatedBytes());
+
+        bestPenalty = statistics.getBestPenalty();
+        meanPenalty = statistics.getMeanPenalty();
+        worstPenalty = statistics.getWorstPenalty();
+        diversity = statistics.getDiversity();
+    }
+
+    private static Timer createPhaseTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("timetable.generation.phase")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+}
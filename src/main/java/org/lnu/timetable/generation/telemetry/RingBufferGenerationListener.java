@@ -0,0 +1,37 @@
+package org.lnu.timetable.generation.telemetry;
+
+import org.lnu.timetable.generation.model.GenerationStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the statistics of the latest generations in memory
+ */
+public class RingBufferGenerationListener implements GenerationListener {
+    private final GenerationStatistics[] buffer;
+    private long count;
+
+    public RingBufferGenerationListener(int capacity) {
+        buffer = new GenerationStatistics[capacity];
+    }
+
+    @Override
+    public synchronized void onGeneration(GenerationStatistics statistics) {
+        buffer[(int) (count++ % buffer.length)] = statistics;
+    }
+
+    /**
+     * Returns the kept statistics from the oldest to the latest
+     */
+    public synchronized List<GenerationStatistics> getStatistics() {
+        int size = (int) Math.min(count, buffer.length);
+
+        List<GenerationStatistics> statistics = new ArrayList<>(size);
+        for (long i = count - size; i < count; ++i) {
+            statistics.add(buffer[(int) (i % buffer.length)]);
+        }
+
+        return statistics;
+    }
+}
@@ -0,0 +1,38 @@
+package org.lnu.timetable.generation.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class TelemetryConfiguration {
+
+    @Bean
+    @ConditionalOnExpression("!'${telemetry.jsonl.file}'.isBlank()")
+    public JsonLinesGenerationListener jsonLinesGenerationListener(ObjectMapper objectMapper,
+                                                                   @Value("${telemetry.jsonl.file}") String fileName) {
+        return new JsonLinesGenerationListener(objectMapper, Path.of(fileName));
+    }
+
+    @Bean
+    @ConditionalOnExpression("${telemetry.ring-buffer.capacity} > 0")
+    public RingBufferGenerationListener ringBufferGenerationListener(
+            @Value("${telemetry.ring-buffer.capacity}") int capacity) {
+        return new RingBufferGenerationListener(capacity);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "telemetry.micrometer.enabled", havingValue = "true")
+    public MicrometerGenerationListener micrometerGenerationListener(ObjectProvider<MeterRegistry> meterRegistry) {
+        // Without a registry bean the meters go to the global composite registry
+        return new MicrometerGenerationListener(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+}
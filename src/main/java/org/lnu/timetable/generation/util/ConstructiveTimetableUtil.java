@@ -0,0 +1,310 @@
+package org.lnu.timetable.generation.util;
+
+import org.lnu.timetable.generation.model.ProblemIndex;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Constructive timetables of a randomized DSATUR heuristic. Lessons sharing a lecturer or an academic group are
+ * neighbours in the conflict graph, and the day and time slot cells of the week are its colors. The next lesson is the
+ * one with the most cells blocked by its placed neighbours, then the one with the most neighbours, then a random one.
+ * It goes to a random free cell, or to the least conflicting cell when none is free, and to the first free place from
+ * a random place on, or to the least occupied place when none is free.
+ *
+ * <p>Lessons occupy the time slots conflicting with their time slot in both halves of the week when they are weekly
+ * and in the less occupied half otherwise. Published lessons of a re-solve keep their days, time slots and places.
+ */
+public final class ConstructiveTimetableUtil {
+    // Priority of a lesson packed into a long: the saturation, the capped degree and the random rank of the lesson
+    private static final int SATURATION_SHIFT = 52;
+    private static final int DEGREE_SHIFT = 32;
+    private static final long DEGREE_MASK = 0xFFFFFL;
+    private static final long RANK_MASK = 0xFFFFFFFFL;
+
+    private ConstructiveTimetableUtil() {
+    }
+
+    public static long[] generateTimetable(ProblemIndex problemIndex, SplittableRandom random) {
+        return new Construction(problemIndex, random).build();
+    }
+
+    /**
+     * State of a single construction. The occupancy of the resources by the placed lessons is counted per resource,
+     * cell and half of the week.
+     */
+    private static final class Construction {
+        private final ProblemIndex problemIndex;
+        private final SplittableRandom random;
+
+        private final int timeSlotsCount;
+        private final int cellsCount;
+        private final int[][] conflictingTimeSlots;
+
+        private final int[] lecturerCounts;
+        private final int[] academicGroupCounts;
+        private final int[] placeCounts;
+
+        private final long[] lessons;
+        private final boolean[] placedLessons;
+
+        /**
+         * Whether a cell is blocked for a lesson, {@code lessonIndex * cellsCount + cell}
+         */
+        private final boolean[] blockedCells;
+        private final int[] saturations;
+        private final int[] degrees;
+        private final int[] lessonRanks;
+        private final int[] rankLessons;
+
+        private final PriorityQueue<Long> lessonQueue = new PriorityQueue<>(Collections.reverseOrder());
+
+        Construction(ProblemIndex problemIndex, SplittableRandom random) {
+            this.problemIndex = problemIndex;
+            this.random = random;
+
+            timeSlotsCount = problemIndex.getTimeSlotsCount();
+            cellsCount = LessonCodec.DAYS_COUNT * timeSlotsCount;
+
+            boolean[][] timeSlotConflicts = problemIndex.getTimeSlotConflicts();
+            conflictingTimeSlots = new int[timeSlotsCount][];
+            for (int timeSlot = 0; timeSlot < timeSlotsCount; ++timeSlot) {
+                int finalTimeSlot = timeSlot;
+                conflictingTimeSlots[timeSlot] = IntStream.range(0, timeSlotsCount)
+                        .filter(otherTimeSlot -> otherTimeSlot == finalTimeSlot
+                                || timeSlotConflicts[finalTimeSlot][otherTimeSlot])
+                        .toArray();
+            }
+
+            lecturerCounts = new int[2 * cellsCount * problemIndex.getLecturersCount()];
+            academicGroupCounts = new int[2 * cellsCount * problemIndex.getAcademicGroupsCount()];
+            placeCounts = new int[2 * cellsCount * problemIndex.getPlacesCount()];
+
+            int lessonsCount = problemIndex.getLessonsCount();
+            lessons = new long[lessonsCount];
+            placedLessons = new boolean[lessonsCount];
+
+            blockedCells = new boolean[lessonsCount * cellsCount];
+            saturations = new int[lessonsCount];
+            degrees = new int[lessonsCount];
+
+            // Random ranks break the ties between the lessons
+            rankLessons = new int[lessonsCount];
+            lessonRanks = new int[lessonsCount];
+            for (int i = 0; i < lessonsCount; ++i) {
+                int j = random.nextInt(i + 1);
+                rankLessons[i] = rankLessons[j];
+                rankLessons[j] = i;
+            }
+            for (int rank = 0; rank < lessonsCount; ++rank) {
+                lessonRanks[rankLessons[rank]] = rank;
+            }
+        }
+
+        long[] build() {
+            int[] lessonLecturers = problemIndex.getLessonLecturers();
+            int[] lessonAcademicGroupOffsets = problemIndex.getLessonAcademicGroupOffsets();
+            int[] lessonAcademicGroups = problemIndex.getLessonAcademicGroups();
+            int[] lecturerLessonOffsets = problemIndex.getLecturerLessonOffsets();
+            int[] academicGroupLessonOffsets = problemIndex.getAcademicGroupLessonOffsets();
+
+            // Neighbours are counted once per shared resource
+            for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+                int lecturerIndex = lessonLecturers[lessonIndex];
+                int degree = lecturerLessonOffsets[lecturerIndex + 1] - lecturerLessonOffsets[lecturerIndex] - 1;
+                for (int i = lessonAcademicGroupOffsets[lessonIndex]; i < lessonAcademicGroupOffsets[lessonIndex + 1]; ++i) {
+                    int academicGroupIndex = lessonAcademicGroups[i];
+                    degree += academicGroupLessonOffsets[academicGroupIndex + 1]
+                            - academicGroupLessonOffsets[academicGroupIndex] - 1;
+                }
+                degrees[lessonIndex] = degree;
+            }
+
+            long[] publishedLessons = problemIndex.getPublishedLessons();
+            if (publishedLessons != null) {
+                for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+                    if (publishedLessons[lessonIndex] != ProblemIndex.NOT_PUBLISHED) {
+                        placeLesson(lessonIndex, publishedLessons[lessonIndex]);
+                    }
+                }
+            }
+
+            for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+                if (!placedLessons[lessonIndex]) {
+                    lessonQueue.add(getPriority(lessonIndex));
+                }
+            }
+
+            // Lessons are queued again when their saturation grows, so the outdated entries are skipped
+            while (!lessonQueue.isEmpty()) {
+                long priority = lessonQueue.poll();
+                int lessonIndex = rankLessons[(int) (priority & RANK_MASK)];
+                if (!placedLessons[lessonIndex] && (int) (priority >>> SATURATION_SHIFT) == saturations[lessonIndex]) {
+                    placeLesson(lessonIndex);
+                }
+            }
+
+            return lessons;
+        }
+
+        private long getPriority(int lessonIndex) {
+            return (long) saturations[lessonIndex] << SATURATION_SHIFT
+                    | Math.min(degrees[lessonIndex], DEGREE_MASK) << DEGREE_SHIFT
+                    | lessonRanks[lessonIndex];
+        }
+
+        private void placeLesson(int lessonIndex) {
+            boolean isBiweekly = problemIndex.getBiweeklyLessons()[lessonIndex];
+
+            int bestCell = -1;
+            int bestPeriodicity = LessonCodec.WEEKLY;
+            int bestCost = Integer.MAX_VALUE;
+            int bestCellsCount = 0;
+            for (int cell = 0; cell < cellsCount; ++cell) {
+                int periodicity = LessonCodec.WEEKLY;
+                int cost;
+                if (isBiweekly) {
+                    int numeratorCost = getLessonCost(lessonIndex, cell, LessonCodec.NUMERATOR);
+                    int denominatorCost = getLessonCost(lessonIndex, cell, LessonCodec.DENOMINATOR);
+                    periodicity = numeratorCost < denominatorCost || numeratorCost == denominatorCost
+                            && random.nextBoolean() ? LessonCodec.NUMERATOR : LessonCodec.DENOMINATOR;
+                    cost = Math.min(numeratorCost, denominatorCost);
+                } else {
+                    cost = getLessonCost(lessonIndex, cell, LessonCodec.WEEKLY);
+                }
+
+                // Every cell of the least cost is chosen with the same probability
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestCellsCount = 0;
+                }
+                if (cost == bestCost && random.nextInt(++bestCellsCount) == 0) {
+                    bestCell = cell;
+                    bestPeriodicity = periodicity;
+                }
+            }
+
+            int placesCount = problemIndex.getPlacesCount();
+            int firstPlaceIndex = random.nextInt(placesCount);
+            int bestPlaceIndex = firstPlaceIndex;
+            int bestPlaceCost = Integer.MAX_VALUE;
+            for (int i = 0; i < placesCount && bestPlaceCost > 0; ++i) {
+                int placeIndex = (firstPlaceIndex + i) % placesCount;
+                int placeCost = getCost(placeCounts, placeIndex, bestCell, bestPeriodicity);
+                if (placeCost < bestPlaceCost) {
+                    bestPlaceIndex = placeIndex;
+                    bestPlaceCost = placeCost;
+                }
+            }
+
+            placeLesson(lessonIndex, LessonCodec.encode(problemIndex.getLessonRequirementsIndexes()[lessonIndex],
+                    bestCell / timeSlotsCount, bestCell % timeSlotsCount, bestPlaceIndex, bestPeriodicity));
+        }
+
+        private void placeLesson(int lessonIndex, long lesson) {
+            lessons[lessonIndex] = lesson;
+            placedLessons[lessonIndex] = true;
+
+            int day = LessonCodec.getDay(lesson);
+            int timeSlot = LessonCodec.getTimeSlotIndex(lesson);
+            int cell = day * timeSlotsCount + timeSlot;
+            int periodicity = LessonCodec.getPeriodicity(lesson);
+
+            int lecturerIndex = problemIndex.getLessonLecturers()[lessonIndex];
+            occupy(lecturerCounts, lecturerIndex, cell, periodicity);
+            occupy(placeCounts, LessonCodec.getPlaceIndex(lesson), cell, periodicity);
+
+            int[] lessonAcademicGroupOffsets = problemIndex.getLessonAcademicGroupOffsets();
+            int[] lessonAcademicGroups = problemIndex.getLessonAcademicGroups();
+            for (int i = lessonAcademicGroupOffsets[lessonIndex]; i < lessonAcademicGroupOffsets[lessonIndex + 1]; ++i) {
+                occupy(academicGroupCounts, lessonAcademicGroups[i], cell, periodicity);
+            }
+
+            // Only the cells conflicting with the occupied one may get blocked for the neighbours
+            updateSaturations(problemIndex.getLecturerLessons(), problemIndex.getLecturerLessonOffsets(),
+                    lecturerIndex, day, timeSlot);
+            for (int i = lessonAcademicGroupOffsets[lessonIndex]; i < lessonAcademicGroupOffsets[lessonIndex + 1]; ++i) {
+                updateSaturations(problemIndex.getAcademicGroupLessons(), problemIndex.getAcademicGroupLessonOffsets(),
+                        lessonAcademicGroups[i], day, timeSlot);
+            }
+        }
+
+        private void updateSaturations(int[] resourceLessons, int[] resourceLessonOffsets, int resourceIndex, int day,
+                                       int timeSlot) {
+            for (int i = resourceLessonOffsets[resourceIndex]; i < resourceLessonOffsets[resourceIndex + 1]; ++i) {
+                int lessonIndex = resourceLessons[i];
+                if (placedLessons[lessonIndex]) {
+                    continue;
+                }
+
+                int saturation = saturations[lessonIndex];
+                for (int conflictingTimeSlot : conflictingTimeSlots[timeSlot]) {
+                    int cell = day * timeSlotsCount + conflictingTimeSlot;
+                    int blockedCellIndex = lessonIndex * cellsCount + cell;
+                    if (!blockedCells[blockedCellIndex] && getMinLessonCost(lessonIndex, cell) > 0) {
+                        blockedCells[blockedCellIndex] = true;
+                        ++saturations[lessonIndex];
+                    }
+                }
+
+                if (saturations[lessonIndex] != saturation) {
+                    lessonQueue.add(getPriority(lessonIndex));
+                }
+            }
+        }
+
+        private int getMinLessonCost(int lessonIndex, int cell) {
+            if (!problemIndex.getBiweeklyLessons()[lessonIndex]) {
+                return getLessonCost(lessonIndex, cell, LessonCodec.WEEKLY);
+            }
+            return Math.min(getLessonCost(lessonIndex, cell, LessonCodec.NUMERATOR),
+                    getLessonCost(lessonIndex, cell, LessonCodec.DENOMINATOR));
+        }
+
+        /**
+         * Number of the placed lessons of the lecturer and the academic groups of the lesson it would conflict with
+         */
+        private int getLessonCost(int lessonIndex, int cell, int periodicity) {
+            int cost = getCost(lecturerCounts, problemIndex.getLessonLecturers()[lessonIndex], cell, periodicity);
+
+            int[] lessonAcademicGroupOffsets = problemIndex.getLessonAcademicGroupOffsets();
+            int[] lessonAcademicGroups = problemIndex.getLessonAcademicGroups();
+            for (int i = lessonAcademicGroupOffsets[lessonIndex]; i < lessonAcademicGroupOffsets[lessonIndex + 1]; ++i) {
+                cost += getCost(academicGroupCounts, lessonAcademicGroups[i], cell, periodicity);
+            }
+
+            return cost;
+        }
+
+        /**
+         * Number of the lessons of the resource in the time slots conflicting with the cell in the occupied halves
+         */
+        private int getCost(int[] counts, int resourceIndex, int cell, int periodicity) {
+            int dayFirstCell = cell - cell % timeSlotsCount;
+
+            int cost = 0;
+            for (int conflictingTimeSlot : conflictingTimeSlots[cell % timeSlotsCount]) {
+                int countIndex = 2 * (resourceIndex * cellsCount + dayFirstCell + conflictingTimeSlot);
+                if (periodicity != LessonCodec.DENOMINATOR) {
+                    cost += counts[countIndex];
+                }
+                if (periodicity != LessonCodec.NUMERATOR) {
+                    cost += counts[countIndex + 1];
+                }
+            }
+            return cost;
+        }
+
+        private void occupy(int[] counts, int resourceIndex, int cell, int periodicity) {
+            int countIndex = 2 * (resourceIndex * cellsCount + cell);
+            if (periodicity != LessonCodec.DENOMINATOR) {
+                ++counts[countIndex];
+            }
+            if (periodicity != LessonCodec.NUMERATOR) {
+                ++counts[countIndex + 1];
+            }
+        }
+    }
+}
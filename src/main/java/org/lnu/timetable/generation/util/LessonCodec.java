@@ -0,0 +1,111 @@
+package org.lnu.timetable.generation.util;
+
+import org.lnu.timetable.generation.model.Day;
+import org.lnu.timetable.generation.model.Lesson;
+import org.lnu.timetable.generation.model.LessonPeriodicity;
+import org.lnu.timetable.generation.model.LessonTimeSlot;
+
+import java.util.List;
+
+/**
+ * Packs a lesson into a single long, so that a timetable is a plain {@code long[]} and can be copied with one
+ * {@link System#arraycopy}. From the lowest bits: periodicity (2 bits), day (3 bits), time slot index (8 bits),
+ * place index (20 bits) and requirements index (31 bits). Days and periodicities are stored as enum ordinals and time
+ * slots as indexes in {@link org.lnu.timetable.generation.model.TimetableRequirements#getTimeSlots()}.
+ */
+public final class LessonCodec {
+    public static final int WEEKLY = LessonPeriodicity.WEEKLY.ordinal();
+    public static final int NUMERATOR = LessonPeriodicity.NUMERATOR.ordinal();
+    public static final int DENOMINATOR = LessonPeriodicity.DENOMINATOR.ordinal();
+
+    public static final int DAYS_COUNT = Day.values().length;
+
+    private static final Day[] DAYS = Day.values();
+    private static final LessonPeriodicity[] PERIODICITIES = LessonPeriodicity.values();
+
+    private static final int PERIODICITY_SHIFT = 0;
+    private static final int DAY_SHIFT = 2;
+    private static final int TIME_SLOT_SHIFT = 5;
+    private static final int PLACE_SHIFT = 13;
+    private static final int REQUIREMENTS_SHIFT = 33;
+
+    private static final long PERIODICITY_MASK = 0x3L;
+    private static final long DAY_MASK = 0x7L;
+    private static final long TIME_SLOT_MASK = 0xFFL;
+    private static final long PLACE_MASK = 0xFFFFFL;
+    private static final long REQUIREMENTS_MASK = 0x7FFFFFFFL;
+
+    public static final int MAX_TIME_SLOTS_COUNT = (int) TIME_SLOT_MASK + 1;
+    public static final int MAX_PLACES_COUNT = (int) PLACE_MASK + 1;
+    public static final long MAX_REQUIREMENTS_COUNT = REQUIREMENTS_MASK + 1;
+
+    private LessonCodec() {
+    }
+
+    public static long encode(int requirementsIndex, int day, int timeSlotIndex, int placeIndex, int periodicity) {
+        return ((long) requirementsIndex << REQUIREMENTS_SHIFT)
+                | ((long) placeIndex << PLACE_SHIFT)
+                | ((long) timeSlotIndex << TIME_SLOT_SHIFT)
+                | ((long) day << DAY_SHIFT)
+                | ((long) periodicity << PERIODICITY_SHIFT);
+    }
+
+    public static int getRequirementsIndex(long lesson) {
+        return (int) ((lesson >>> REQUIREMENTS_SHIFT) & REQUIREMENTS_MASK);
+    }
+
+    public static int getDay(long lesson) {
+        return (int) ((lesson >>> DAY_SHIFT) & DAY_MASK);
+    }
+
+    public static int getTimeSlotIndex(long lesson) {
+        return (int) ((lesson >>> TIME_SLOT_SHIFT) & TIME_SLOT_MASK);
+    }
+
+    public static int getPlaceIndex(long lesson) {
+        return (int) ((lesson >>> PLACE_SHIFT) & PLACE_MASK);
+    }
+
+    public static int getPeriodicity(long lesson) {
+        return (int) ((lesson >>> PERIODICITY_SHIFT) & PERIODICITY_MASK);
+    }
+
+    public static long withDay(long lesson, int day) {
+        return (lesson & ~(DAY_MASK << DAY_SHIFT)) | ((long) day << DAY_SHIFT);
+    }
+
+    public static long withTimeSlotIndex(long lesson, int timeSlotIndex) {
+        return (lesson & ~(TIME_SLOT_MASK << TIME_SLOT_SHIFT)) | ((long) timeSlotIndex << TIME_SLOT_SHIFT);
+    }
+
+    public static long withPlaceIndex(long lesson, int placeIndex) {
+        return (lesson & ~(PLACE_MASK << PLACE_SHIFT)) | ((long) placeIndex << PLACE_SHIFT);
+    }
+
+    public static long withPeriodicity(long lesson, int periodicity) {
+        return (lesson & ~(PERIODICITY_MASK << PERIODICITY_SHIFT)) | ((long) periodicity << PERIODICITY_SHIFT);
+    }
+
+    public static long encode(Lesson lesson, List<LessonTimeSlot> timeSlots) {
+        return encode(lesson.getRequirementsIndex(), lesson.getDay().ordinal(), timeSlots.indexOf(lesson.getTimeSlot()),
+                lesson.getPlaceIndex(), lesson.getPeriodicity().ordinal());
+    }
+
+    public static Lesson decode(long lesson, List<LessonTimeSlot> timeSlots) {
+        return Lesson.builder()
+                .requirementsIndex(getRequirementsIndex(lesson))
+                .day(DAYS[getDay(lesson)])
+                .timeSlot(timeSlots.get(getTimeSlotIndex(lesson)))
+                .placeIndex(getPlaceIndex(lesson))
+                .periodicity(PERIODICITIES[getPeriodicity(lesson)])
+                .build();
+    }
+
+    public static Lesson[] decode(long[] lessons, List<LessonTimeSlot> timeSlots) {
+        Lesson[] decodedLessons = new Lesson[lessons.length];
+        for (int i = 0; i < lessons.length; ++i) {
+            decodedLessons[i] = decode(lessons[i], timeSlots);
+        }
+        return decodedLessons;
+    }
+}
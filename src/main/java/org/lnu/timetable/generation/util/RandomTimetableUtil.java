@@ -0,0 +1,59 @@
+package org.lnu.timetable.generation.util;
+
+import org.lnu.timetable.generation.model.ProblemIndex;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random timetables and lesson parts shared by the solvers. Lessons are packed with {@link LessonCodec}.
+ */
+public final class RandomTimetableUtil {
+
+    private RandomTimetableUtil() {
+    }
+
+    /**
+     * Generates a timetable with every lesson at a random day, time slot and place. Biweekly lessons get a random
+     * periodicity, the others are weekly. Published lessons of a re-solve keep their places.
+     */
+    public static long[] generateTimetable(ProblemIndex problemIndex, SplittableRandom random) {
+        int[] lessonRequirementsIndexes = problemIndex.getLessonRequirementsIndexes();
+        boolean[] biweeklyLessons = problemIndex.getBiweeklyLessons();
+        long[] publishedLessons = problemIndex.getPublishedLessons();
+
+        long[] lessons = new long[problemIndex.getLessonsCount()];
+        for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+            if (publishedLessons != null && publishedLessons[lessonIndex] != ProblemIndex.NOT_PUBLISHED) {
+                lessons[lessonIndex] = publishedLessons[lessonIndex];
+                continue;
+            }
+
+            int day = getRandomDay(random);
+            int timeSlotIndex = getRandomTimeSlot(random, problemIndex);
+            int lessonPlaceIndex = getRandomPlace(random, problemIndex);
+
+            int lessonPeriodicity = biweeklyLessons[lessonIndex] ? getRandomBiweeklyPeriodicity(random) : LessonCodec.WEEKLY;
+
+            lessons[lessonIndex] = LessonCodec.encode(lessonRequirementsIndexes[lessonIndex], day, timeSlotIndex,
+                    lessonPlaceIndex, lessonPeriodicity);
+        }
+
+        return lessons;
+    }
+
+    public static int getRandomDay(SplittableRandom random) {
+        return random.nextInt(LessonCodec.DAYS_COUNT);
+    }
+
+    public static int getRandomTimeSlot(SplittableRandom random, ProblemIndex problemIndex) {
+        return random.nextInt(problemIndex.getTimeSlotsCount());
+    }
+
+    public static int getRandomPlace(SplittableRandom random, ProblemIndex problemIndex) {
+        return random.nextInt(problemIndex.getPlacesCount());
+    }
+
+    public static int getRandomBiweeklyPeriodicity(SplittableRandom random) {
+        return random.nextBoolean() ? LessonCodec.NUMERATOR : LessonCodec.DENOMINATOR;
+    }
+}
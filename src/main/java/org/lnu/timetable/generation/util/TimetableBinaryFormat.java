@@ -0,0 +1,311 @@
+package org.lnu.timetable.generation.util;
+
+import org.lnu.timetable.generation.model.CompactTimetableRequirements;
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.GenerationCheckpoint;
+import org.lnu.timetable.generation.model.LessonTimeSlot;
+import org.lnu.timetable.generation.model.SolvedTimetable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versioned little-endian binary files of requirements and solved timetables. A file starts with a magic number and a
+ * version followed by the counts, then the primitive arrays follow one after another. Files are read through
+ * {@link FileChannel#map}, every array is a single bulk copy out of the mapped file without any parsing.
+ *
+ * <p>Requirements files hold {@link CompactTimetableRequirements} without the time slots, like the JSON examples.
+ * Timetable files hold the time slots as seconds of the day, the lessons packed with {@link LessonCodec}, the penalty
+ * and the lesson penalties. Checkpoint files hold a {@link GenerationCheckpoint} and are replaced atomically, so a crash
+ * while writing keeps the previous checkpoint.
+ */
+public final class TimetableBinaryFormat {
+    public static final String REQUIREMENTS_FILE_EXTENSION = ".ttr";
+    public static final String TIMETABLE_FILE_EXTENSION = ".ttt";
+
+    public static final int VERSION = 1;
+
+    /**
+     * Checkpoints hold the fitness caches of the islands since version 2
+     */
+    public static final int CHECKPOINT_VERSION = 2;
+
+    private static final int REQUIREMENTS_MAGIC = 0x51525454; // "TTRQ"
+    private static final int TIMETABLE_MAGIC = 0x42545454; // "TTTB"
+    private static final int CHECKPOINT_MAGIC = 0x50435454; // "TTCP"
+
+    private static final int REQUIREMENTS_HEADER_BYTES = 7 * Integer.BYTES;
+    private static final int TIMETABLE_HEADER_BYTES = 4 * Integer.BYTES + Double.BYTES;
+    private static final int CHECKPOINT_HEADER_BYTES = 6 * Integer.BYTES;
+
+    private TimetableBinaryFormat() {
+    }
+
+    public static void writeRequirements(Path pathToFile, CompactTimetableRequirements requirements) {
+        int requirementsCount = requirements.getRequirementsCount();
+        int academicGroupIndexesCount = requirements.getAcademicGroupIndexes().length;
+
+        ByteBuffer buffer = allocate(REQUIREMENTS_HEADER_BYTES
+                + Integer.BYTES * (2 * requirementsCount + 1 + academicGroupIndexesCount)
+                + Double.BYTES * requirementsCount);
+
+        buffer.putInt(REQUIREMENTS_MAGIC)
+                .putInt(VERSION)
+                .putInt(requirements.getLecturersCount())
+                .putInt(requirements.getAcademicGroupsCount())
+                .putInt(requirements.getPlacesCount())
+                .putInt(requirementsCount)
+                .putInt(academicGroupIndexesCount);
+
+        putInts(buffer, requirements.getLecturerIndexes());
+        putInts(buffer, requirements.getAcademicGroupOffsets());
+        putInts(buffer, requirements.getAcademicGroupIndexes());
+        putDoubles(buffer, requirements.getLessonsCountsPerWeek());
+
+        write(pathToFile, buffer);
+    }
+
+    /**
+     * @param timeSlots time slots of the requirements, which are not stored in the file
+     */
+    public static CompactTimetableRequirements readRequirements(Path pathToFile, List<LessonTimeSlot> timeSlots) {
+        ByteBuffer buffer = map(pathToFile, REQUIREMENTS_MAGIC, REQUIREMENTS_HEADER_BYTES);
+
+        int lecturersCount = buffer.getInt();
+        int academicGroupsCount = buffer.getInt();
+        int placesCount = buffer.getInt();
+        int requirementsCount = buffer.getInt();
+        int academicGroupIndexesCount = buffer.getInt();
+
+        int[] lecturerIndexes = getInts(buffer, requirementsCount);
+        int[] academicGroupOffsets = getInts(buffer, requirementsCount + 1);
+        int[] academicGroupIndexes = getInts(buffer, academicGroupIndexesCount);
+        double[] lessonsCountsPerWeek = getDoubles(buffer, requirementsCount);
+
+        return new CompactTimetableRequirements(lecturersCount, academicGroupsCount, placesCount, timeSlots,
+                lecturerIndexes, academicGroupOffsets, academicGroupIndexes, lessonsCountsPerWeek);
+    }
+
+    public static void writeTimetable(Path pathToFile, SolvedTimetable solvedTimetable) {
+        List<LessonTimeSlot> timeSlots = solvedTimetable.getTimeSlots();
+        EvaluatedTimetable timetable = solvedTimetable.getTimetable();
+        int lessonsCount = timetable.getLessons().length;
+
+        ByteBuffer buffer = allocate(TIMETABLE_HEADER_BYTES + 2 * Integer.BYTES * timeSlots.size()
+                + (Long.BYTES + Double.BYTES) * lessonsCount);
+
+        buffer.putInt(TIMETABLE_MAGIC)
+                .putInt(VERSION)
+                .putInt(timeSlots.size())
+                .putInt(lessonsCount)
+                .putDouble(timetable.getPenalty());
+
+        for (LessonTimeSlot timeSlot : timeSlots) {
+            buffer.putInt(timeSlot.getStartTime().toSecondOfDay())
+                    .putInt(timeSlot.getEndTime().toSecondOfDay());
+        }
+
+        buffer.asLongBuffer().put(timetable.getLessons());
+        buffer.position(buffer.position() + Long.BYTES * lessonsCount);
+        putDoubles(buffer, timetable.getLessonPenalties());
+
+        write(pathToFile, buffer);
+    }
+
+    public static SolvedTimetable readTimetable(Path pathToFile) {
+        ByteBuffer buffer = map(pathToFile, TIMETABLE_MAGIC, TIMETABLE_HEADER_BYTES);
+
+        int timeSlotsCount = buffer.getInt();
+        int lessonsCount = buffer.getInt();
+        double penalty = buffer.getDouble();
+
+        List<LessonTimeSlot> timeSlots = new ArrayList<>(timeSlotsCount);
+        for (int i = 0; i < timeSlotsCount; ++i) {
+            timeSlots.add(new LessonTimeSlot(LocalTime.ofSecondOfDay(buffer.getInt()),
+                    LocalTime.ofSecondOfDay(buffer.getInt())));
+        }
+
+        long[] lessons = new long[lessonsCount];
+        buffer.asLongBuffer().get(lessons);
+        buffer.position(buffer.position() + Long.BYTES * lessonsCount);
+        double[] lessonPenalties = getDoubles(buffer, lessonsCount);
+
+        return new SolvedTimetable(timeSlots, new EvaluatedTimetable(lessons, penalty, lessonPenalties));
+    }
+
+    public static void writeCheckpoint(Path pathToFile, GenerationCheckpoint checkpoint) {
+        List<List<EvaluatedTimetable>> islandPopulations = checkpoint.getIslandPopulations();
+        int lessonsCount = islandPopulations.get(0).get(0).getLessons().length;
+
+        int timetablesCount = islandPopulations.stream().mapToInt(List::size).sum();
+        int cachedTimetablesCount = Arrays.stream(checkpoint.getIslandCachedHashes()).mapToInt(hashes -> hashes.length)
+                .sum();
+        ByteBuffer buffer = allocate(CHECKPOINT_HEADER_BYTES
+                + (Long.BYTES + 3 * Integer.BYTES) * islandPopulations.size()
+                + (Double.BYTES + (Long.BYTES + Double.BYTES) * lessonsCount) * timetablesCount
+                + (Long.BYTES + Double.BYTES) * cachedTimetablesCount);
+
+        buffer.putInt(CHECKPOINT_MAGIC)
+                .putInt(CHECKPOINT_VERSION)
+                .putInt(islandPopulations.size())
+                .putInt(lessonsCount)
+                .putInt(checkpoint.getIteration())
+                .putInt(checkpoint.getImprovementIteration());
+
+        for (int i = 0; i < islandPopulations.size(); ++i) {
+            List<EvaluatedTimetable> population = islandPopulations.get(i);
+            long[] cachedHashes = checkpoint.getIslandCachedHashes()[i];
+
+            buffer.putLong(checkpoint.getIslandRandomSeeds()[i])
+                    .putInt(checkpoint.getIslandGenerations()[i])
+                    .putInt(population.size())
+                    .putInt(cachedHashes.length);
+
+            for (EvaluatedTimetable timetable : population) {
+                buffer.putDouble(timetable.getPenalty());
+                buffer.asLongBuffer().put(timetable.getLessons());
+                buffer.position(buffer.position() + Long.BYTES * lessonsCount);
+                putDoubles(buffer, timetable.getLessonPenalties());
+            }
+
+            buffer.asLongBuffer().put(cachedHashes);
+            buffer.position(buffer.position() + Long.BYTES * cachedHashes.length);
+            putDoubles(buffer, checkpoint.getIslandCachedPenalties()[i]);
+        }
+
+        Path temporaryFile = pathToFile.resolveSibling(pathToFile.getFileName() + ".tmp");
+        write(temporaryFile, buffer);
+        try {
+            Files.move(temporaryFile, pathToFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static GenerationCheckpoint readCheckpoint(Path pathToFile) {
+        ByteBuffer buffer = map(pathToFile, CHECKPOINT_MAGIC, CHECKPOINT_VERSION, CHECKPOINT_HEADER_BYTES);
+
+        int islandsCount = buffer.getInt();
+        int lessonsCount = buffer.getInt();
+        int iteration = buffer.getInt();
+        int improvementIteration = buffer.getInt();
+
+        long[] islandRandomSeeds = new long[islandsCount];
+        int[] islandGenerations = new int[islandsCount];
+        List<List<EvaluatedTimetable>> islandPopulations = new ArrayList<>(islandsCount);
+        long[][] islandCachedHashes = new long[islandsCount][];
+        double[][] islandCachedPenalties = new double[islandsCount][];
+        for (int i = 0; i < islandsCount; ++i) {
+            islandRandomSeeds[i] = buffer.getLong();
+            islandGenerations[i] = buffer.getInt();
+            int populationSize = buffer.getInt();
+            int cachedTimetablesCount = buffer.getInt();
+
+            List<EvaluatedTimetable> population = new ArrayList<>(populationSize);
+            for (int j = 0; j < populationSize; ++j) {
+                double penalty = buffer.getDouble();
+
+                long[] lessons = new long[lessonsCount];
+                buffer.asLongBuffer().get(lessons);
+                buffer.position(buffer.position() + Long.BYTES * lessonsCount);
+
+                population.add(new EvaluatedTimetable(lessons, penalty, getDoubles(buffer, lessonsCount)));
+            }
+            islandPopulations.add(population);
+
+            islandCachedHashes[i] = new long[cachedTimetablesCount];
+            buffer.asLongBuffer().get(islandCachedHashes[i]);
+            buffer.position(buffer.position() + Long.BYTES * cachedTimetablesCount);
+            islandCachedPenalties[i] = getDoubles(buffer, cachedTimetablesCount);
+        }
+
+        return new GenerationCheckpoint(iteration, improvementIteration, islandRandomSeeds, islandGenerations,
+                islandPopulations, islandCachedHashes, islandCachedPenalties);
+    }
+
+    private static ByteBuffer allocate(int bytesCount) {
+        return ByteBuffer.allocate(bytesCount).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void write(Path pathToFile, ByteBuffer buffer) {
+        buffer.flip();
+
+        try {
+            Path parent = pathToFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+
+            try (FileChannel channel = FileChannel.open(pathToFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Maps the file and checks its magic number and version, the returned buffer is positioned after them
+     */
+    private static ByteBuffer map(Path pathToFile, int magic, int headerBytes) {
+        return map(pathToFile, magic, VERSION, headerBytes);
+    }
+
+    private static ByteBuffer map(Path pathToFile, int magic, int expectedVersion, int headerBytes) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(pathToFile, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < headerBytes || buffer.getInt() != magic) {
+            throw new RuntimeException("Not a timetable binary file of the expected kind: " + pathToFile);
+        }
+
+        int version = buffer.getInt();
+        if (version != expectedVersion) {
+            throw new RuntimeException("Unsupported version " + version + " of " + pathToFile);
+        }
+
+        return buffer;
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + Integer.BYTES * values.length);
+    }
+
+    private static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + Double.BYTES * values.length);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + Integer.BYTES * count);
+        return values;
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + Double.BYTES * count);
+        return values;
+    }
+}
@@ -0,0 +1,87 @@
+package org.lnu.timetable.generation.util;
+
+/**
+ * Selects the most penalized lessons of a timetable without sorting all of them. A bounded heap keeps the worst
+ * lessons seen so far with the least penalized of them at the root, so most lessons are rejected by a single
+ * comparison and the selection takes {@code O(n log k)} time at worst without boxing the lesson indexes.
+ *
+ * <p>The lessons are ordered by their penalties descending and the lessons with equal penalties by their indexes, the
+ * same order as of a stable sort of all lesson indexes by their penalties descending.
+ */
+public final class WorstLessonsSelector {
+
+    private WorstLessonsSelector() {
+    }
+
+    /**
+     * Writes the indexes of the worst lessons to the beginning of the buffer, the most penalized lesson first
+     *
+     * @param lessonsCount number of the lessons to select, at most the length of the buffer
+     * @return number of the selected lessons, which is less than the given one when the timetable has less lessons
+     */
+    public static int selectWorstLessons(double[] lessonPenalties, int lessonsCount, int[] lessonIndexes) {
+        int heapSize = 0;
+        for (int lessonIndex = 0; lessonIndex < lessonPenalties.length && lessonsCount > 0; ++lessonIndex) {
+            if (heapSize < lessonsCount) {
+                lessonIndexes[heapSize] = lessonIndex;
+                siftUp(lessonPenalties, lessonIndexes, heapSize++);
+            } else if (lessonPenalties[lessonIndex] > lessonPenalties[lessonIndexes[0]]) {
+                // A later lesson with the same penalty as the root goes after it
+                lessonIndexes[0] = lessonIndex;
+                siftDown(lessonPenalties, lessonIndexes, heapSize);
+            }
+        }
+
+        // Removing the roots one by one leaves the least penalized lesson at the end
+        for (int size = heapSize - 1; size > 0; --size) {
+            int root = lessonIndexes[0];
+            lessonIndexes[0] = lessonIndexes[size];
+            lessonIndexes[size] = root;
+            siftDown(lessonPenalties, lessonIndexes, size);
+        }
+
+        return heapSize;
+    }
+
+    /**
+     * Whether the first lesson goes after the second one in the order of the selected lessons
+     */
+    private static boolean isBetter(double[] lessonPenalties, int lessonIndex1, int lessonIndex2) {
+        double penalty1 = lessonPenalties[lessonIndex1];
+        double penalty2 = lessonPenalties[lessonIndex2];
+        return penalty1 < penalty2 || penalty1 == penalty2 && lessonIndex1 > lessonIndex2;
+    }
+
+    private static void siftUp(double[] lessonPenalties, int[] heap, int position) {
+        int lessonIndex = heap[position];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            if (!isBetter(lessonPenalties, lessonIndex, heap[parentPosition])) {
+                break;
+            }
+            heap[position] = heap[parentPosition];
+            position = parentPosition;
+        }
+        heap[position] = lessonIndex;
+    }
+
+    private static void siftDown(double[] lessonPenalties, int[] heap, int size) {
+        int lessonIndex = heap[0];
+        int position = 0;
+        while (true) {
+            int childPosition = 2 * position + 1;
+            if (childPosition >= size) {
+                break;
+            }
+            if (childPosition + 1 < size && isBetter(lessonPenalties, heap[childPosition + 1], heap[childPosition])) {
+                ++childPosition;
+            }
+            if (!isBetter(lessonPenalties, heap[childPosition], lessonIndex)) {
+                break;
+            }
+            heap[position] = heap[childPosition];
+            position = childPosition;
+        }
+        heap[position] = lessonIndex;
+    }
+}
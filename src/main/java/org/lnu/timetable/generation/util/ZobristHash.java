@@ -0,0 +1,44 @@
+package org.lnu.timetable.generation.util;
+
+/**
+ * Zobrist hash of a timetable: the XOR of the random keys of its lessons. The key of a lesson depends on its index and
+ * on its day, time slot, place and periodicity, so a change of some lessons updates the hash with two XORs per
+ * changed lesson. Instead of a table of random keys for every lesson and value, the keys are computed by mixing the
+ * lesson index with the packed lesson.
+ */
+public final class ZobristHash {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private ZobristHash() {
+    }
+
+    public static long hash(long[] lessons) {
+        long hash = 0;
+        for (int lessonIndex = 0; lessonIndex < lessons.length; ++lessonIndex) {
+            hash ^= getKey(lessonIndex, lessons[lessonIndex]);
+        }
+        return hash;
+    }
+
+    /**
+     * @param changedLessonIndexes distinct indexes of the lessons that differ from the parent ones
+     * @return hash of the lessons derived from the parent lessons with the given hash
+     */
+    public static long update(long parentHash, long[] parentLessons, long[] lessons, int[] changedLessonIndexes) {
+        long hash = parentHash;
+        for (int lessonIndex : changedLessonIndexes) {
+            hash ^= getKey(lessonIndex, parentLessons[lessonIndex]) ^ getKey(lessonIndex, lessons[lessonIndex]);
+        }
+        return hash;
+    }
+
+    /**
+     * The SplitMix64 finalizer of the packed lesson shifted by the lesson index
+     */
+    private static long getKey(int lessonIndex, long lesson) {
+        long key = lesson + (lessonIndex + 1) * GOLDEN_GAMMA;
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+}
@@ -0,0 +1,50 @@
+package org.lnu.timetable.generation.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+    @Test
+    void addMatchesHashSetBeyondExpectedSize() {
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expectedSet = new HashSet<>();
+
+        // Few distinct keys, so that most of them are added again
+        SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < 10_000; ++i) {
+            long key = random.nextInt(1000) * 0x9E3779B97F4A7C15L;
+            assertEquals(expectedSet.add(key), set.add(key), "key " + key);
+        }
+    }
+
+    @Test
+    void zeroIsKeptLikeOtherKeys() {
+        LongHashSet set = new LongHashSet(4);
+
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(1));
+    }
+
+    @Test
+    void clearedSetTakesKeysAgain() {
+        LongHashSet set = new LongHashSet(4);
+        for (long key = 0; key < 100; ++key) {
+            set.add(key);
+        }
+
+        set.clear();
+
+        for (long key = 0; key < 100; ++key) {
+            assertTrue(set.add(key));
+        }
+    }
+}
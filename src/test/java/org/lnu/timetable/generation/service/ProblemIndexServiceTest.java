@@ -0,0 +1,56 @@
+package org.lnu.timetable.generation.service;
+
+import org.junit.jupiter.api.Test;
+import org.lnu.timetable.generation.model.LessonPlace;
+import org.lnu.timetable.generation.model.LessonRequirements;
+import org.lnu.timetable.generation.model.LessonTimeSlot;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.util.LessonTimeSlotUtil;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProblemIndexServiceTest {
+    private final ProblemIndexService problemIndexService = new ProblemIndexService(new LessonTimeSlotUtil(5, 40));
+
+    @Test
+    void timeSlotsAreOrderedByTime() {
+        ProblemIndex problemIndex = problemIndexService.createProblemIndex(createTimetableRequirements(List.of(
+                new LessonTimeSlot(LocalTime.of(11, 50), LocalTime.of(13, 10)),
+                new LessonTimeSlot(LocalTime.of(8, 30), LocalTime.of(9, 50)),
+                new LessonTimeSlot(LocalTime.of(10, 10), LocalTime.of(11, 30))
+        )));
+
+        assertArrayEquals(new int[]{2, 0, 1}, problemIndex.getTimeSlotOrders());
+    }
+
+    @Test
+    void duplicateTimeSlotsAreRejected() {
+        TimetableRequirements timetableRequirements = createTimetableRequirements(List.of(
+                new LessonTimeSlot(LocalTime.of(8, 30), LocalTime.of(9, 50)),
+                new LessonTimeSlot(LocalTime.of(10, 10), LocalTime.of(11, 30)),
+                new LessonTimeSlot(LocalTime.of(8, 30), LocalTime.of(9, 50))
+        ));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> problemIndexService.createProblemIndex(timetableRequirements));
+        assertTrue(exception.getMessage().contains("08:30 - 09:50"), exception.getMessage());
+    }
+
+    private static TimetableRequirements createTimetableRequirements(List<LessonTimeSlot> timeSlots) {
+        List<LessonRequirements> lessonRequirementsList = List.of(
+                new LessonRequirements(0, Set.of(0), 1),
+                new LessonRequirements(1, Set.of(0, 1), 1.5)
+        );
+        List<LessonPlace> places = Arrays.asList(null, null);
+
+        return new TimetableRequirements(lessonRequirementsList, places, timeSlots);
+    }
+}
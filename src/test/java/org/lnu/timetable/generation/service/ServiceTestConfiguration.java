@@ -0,0 +1,28 @@
+package org.lnu.timetable.generation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Spring context of the service tests: the services and the application properties without the command line runner,
+ * which would solve the demo example
+ */
+@Configuration
+@ComponentScan(basePackages = {"org.lnu.timetable.generation.service", "org.lnu.timetable.generation.util"},
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ANNOTATION, classes = Configuration.class))
+@PropertySource("classpath:application.properties")
+class ServiceTestConfiguration {
+
+    @Bean
+    public ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule())
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package org.lnu.timetable.generation.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.lnu.timetable.generation.model.BatchJobResult;
+import org.lnu.timetable.generation.model.BatchSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A failed job must give a result with its error, while the other jobs of the batch keep their results
+ */
+@SpringJUnitConfig(ServiceTestConfiguration.class)
+@TestPropertySource(properties = {"iterations.max-count=20", "evaluation.parallelism=1", "batch.workers-count=2"})
+class TimetableBatchServiceTest {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Autowired
+    private TimetableBatchService timetableBatchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void failedJobDoesNotFailBatch() throws IOException {
+        Path inputDirectory = Files.createDirectories(tempDirectory.resolve("input"));
+        Files.copy(Path.of("timetable-requirements-examples", "Example1.json"), inputDirectory.resolve("Example1.json"));
+        Files.writeString(inputDirectory.resolve("Broken.json"), "{");
+        Path outputDirectory = tempDirectory.resolve("output");
+
+        BatchSummary summary = timetableBatchService.solveBatch(inputDirectory, outputDirectory);
+
+        assertEquals(2, summary.getJobsCount());
+        assertEquals(1, summary.getFailedJobsCount());
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : Files.readAllLines(outputDirectory.resolve("results.jsonl"))) {
+            results.add(objectMapper.readTree(line));
+        }
+        assertEquals(2, results.size());
+
+        for (JsonNode result : results) {
+            if (result.get("requirementsFile").asText().endsWith("Broken.json")) {
+                assertTrue(result.get("timetableFile").isNull());
+                assertTrue(result.get("error").isTextual());
+            } else {
+                assertTrue(Files.exists(Path.of(result.get("timetableFile").asText())));
+                assertTrue(result.get("error").isNull());
+            }
+        }
+    }
+
+    @Test
+    void failedResultWriteIsRecordedOnJob() {
+        BatchJobResult result = new BatchJobResult("Example1.json", "Example1-timetable.json", 1.5, 20, 100, 7L, 20,
+                null);
+        BufferedWriter failingWriter = new BufferedWriter(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("No space left on device");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        BatchJobResult writtenResult = timetableBatchService.writeResult(failingWriter, result);
+
+        assertTrue(writtenResult.getError().contains("No space left on device"), writtenResult.getError());
+        assertEquals(result.getTimetableFile(), writtenResult.getTimetableFile());
+        assertEquals(result.getPenalty(), writtenResult.getPenalty());
+        assertNull(result.getError());
+    }
+}
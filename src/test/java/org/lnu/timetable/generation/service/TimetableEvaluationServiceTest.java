@@ -0,0 +1,116 @@
+package org.lnu.timetable.generation.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.lnu.timetable.generation.model.TimetableRequirements;
+import org.lnu.timetable.generation.util.LessonCodec;
+import org.lnu.timetable.generation.util.RandomTimetableUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * The evaluation of a derived timetable must give the penalties of the full evaluation. Every example goes through a
+ * chain of random edits of several lessons, each edit is evaluated from the previous timetable and compared to the full
+ * evaluation, so that errors of the delta evaluation would also accumulate along the chain.
+ */
+@SpringJUnitConfig(ServiceTestConfiguration.class)
+class TimetableEvaluationServiceTest {
+    private static final int EDITS_COUNT = 2000;
+    private static final int EDITED_LESSONS_MAX_COUNT = 8;
+
+    // Penalties of the derived timetables are sums updated along the chain, so they may differ in the last digits
+    private static final double RELATIVE_TOLERANCE = 1e-9;
+
+    @Autowired
+    private TimetableEvaluationService timetableEvaluationService;
+
+    @Autowired
+    private ProblemIndexService problemIndexService;
+
+    @Autowired
+    private TimetableRequirementsGenerationService timetableRequirementsGenerationService;
+
+    @Autowired
+    private TimetableGenerationDemo timetableGenerationDemo;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Example1.json", "Example2.json", "Example3.json", "Example4.json"})
+    void derivedTimetableEvaluationMatchesFullEvaluation(String exampleFileName) {
+        TimetableRequirements timetableRequirements = timetableGenerationDemo.createTimetableRequirements(
+                timetableRequirementsGenerationService.readExampleTimetableRequirementsExample(exampleFileName));
+        ProblemIndex problemIndex = problemIndexService.createProblemIndex(timetableRequirements);
+
+        SplittableRandom random = new SplittableRandom(0);
+        int lessonsCount = problemIndex.getLessonsCount();
+
+        EvaluatedTimetable timetable = timetableEvaluationService.evaluateTimetable(problemIndex,
+                RandomTimetableUtil.generateTimetable(problemIndex, random));
+        for (int i = 0; i < EDITS_COUNT; ++i) {
+            long[] lessons = timetable.getLessons().clone();
+            int[] changedLessonIndexes = editLessons(problemIndex, lessons, random,
+                    1 + random.nextInt(Math.min(EDITED_LESSONS_MAX_COUNT, lessonsCount)));
+
+            EvaluatedTimetable expected = timetableEvaluationService.evaluateTimetable(problemIndex, lessons.clone());
+
+            EvaluatedTimetable derived = timetableEvaluationService.evaluateTimetable(problemIndex, timetable,
+                    lessons, changedLessonIndexes);
+            assertEvaluation(expected, derived);
+
+            EvaluatedTimetable derivedWithoutCutoff = timetableEvaluationService.evaluateTimetable(problemIndex,
+                    timetable, lessons, changedLessonIndexes, new double[lessonsCount], Double.POSITIVE_INFINITY);
+            assertNotNull(derivedWithoutCutoff);
+            assertEvaluation(expected, derivedWithoutCutoff);
+
+            timetable = derived;
+        }
+    }
+
+    /**
+     * Moves distinct random lessons to a random day, time slot and place, biweekly lessons may also swap their weeks
+     *
+     * @return indexes of the edited lessons
+     */
+    private int[] editLessons(ProblemIndex problemIndex, long[] lessons, SplittableRandom random,
+                              int editedLessonsCount) {
+        int[] lessonIndexes = random.ints(0, lessons.length)
+                .distinct()
+                .limit(editedLessonsCount)
+                .toArray();
+
+        for (int lessonIndex : lessonIndexes) {
+            long lesson = lessons[lessonIndex];
+            lesson = LessonCodec.withDay(lesson, RandomTimetableUtil.getRandomDay(random));
+            lesson = LessonCodec.withTimeSlotIndex(lesson, RandomTimetableUtil.getRandomTimeSlot(random, problemIndex));
+            lesson = LessonCodec.withPlaceIndex(lesson, RandomTimetableUtil.getRandomPlace(random, problemIndex));
+            if (LessonCodec.getPeriodicity(lesson) != LessonCodec.WEEKLY) {
+                lesson = LessonCodec.withPeriodicity(lesson, RandomTimetableUtil.getRandomBiweeklyPeriodicity(random));
+            }
+            lessons[lessonIndex] = lesson;
+        }
+
+        return lessonIndexes;
+    }
+
+    private void assertEvaluation(EvaluatedTimetable expected, EvaluatedTimetable actual) {
+        assertPenalty(expected.getPenalty(), actual.getPenalty(), "penalty");
+
+        double[] expectedLessonPenalties = expected.getLessonPenalties();
+        double[] actualLessonPenalties = actual.getLessonPenalties();
+        for (int i = 0; i < expectedLessonPenalties.length; ++i) {
+            assertPenalty(expectedLessonPenalties[i], actualLessonPenalties[i], "penalty of lesson " + i);
+        }
+
+        assertEquals(expected.getHash(), actual.getHash());
+    }
+
+    private void assertPenalty(double expected, double actual, String message) {
+        assertEquals(expected, actual, RELATIVE_TOLERANCE * Math.max(1, Math.abs(expected)), message);
+    }
+}
@@ -0,0 +1,99 @@
+package org.lnu.timetable.generation.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.lnu.timetable.generation.model.EvaluatedTimetable;
+import org.lnu.timetable.generation.model.ProblemIndex;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The evaluation cutoff and the fitness cache only skip the offspring that cannot survive the selection, so a
+ * generation must keep the same timetables with and without them. The copies of the best timetable in the population,
+ * as left by the migration, are kept behind the distinct offspring by the selection, so they must not lower the
+ * penalty the offspring have to beat.
+ */
+class TimetableGenerationServiceTest {
+    private static final String EXAMPLE_FILE_NAME = "Example2.json";
+    private static final int COPIES_COUNT = 10;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3})
+    void evaluationCutoffDoesNotChangeSurvivors(long seed) {
+        try (AnnotationConfigApplicationContext cutoffContext = createContext(true);
+             AnnotationConfigApplicationContext noCutoffContext = createContext(false)) {
+            List<Long> expectedSurvivorHashes = getSurvivorHashes(noCutoffContext, seed, null);
+
+            assertEquals(expectedSurvivorHashes, getSurvivorHashes(cutoffContext, seed, null));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3})
+    void cachedOffspringPenaltiesDoNotChangeSurvivors(long seed) {
+        try (AnnotationConfigApplicationContext context = createContext(true)) {
+            // The first generation leaves the penalties of its offspring in the cache for the same generation again
+            FitnessCache fitnessCache = new FitnessCache(10000);
+            List<Long> expectedSurvivorHashes = getSurvivorHashes(context, seed, fitnessCache);
+
+            assertEquals(expectedSurvivorHashes, getSurvivorHashes(context, seed, fitnessCache));
+        }
+    }
+
+    private static AnnotationConfigApplicationContext createContext(boolean isEvaluationCutoffEnabled) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "evaluation.cutoff.enabled", isEvaluationCutoffEnabled,
+                "evaluation.parallelism", 1
+        )));
+        context.register(ServiceTestConfiguration.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Makes a generation from the seeded initial population, in which copies of the best timetable replace the worst
+     * ones
+     *
+     * @param fitnessCache cache of the generation, {@code null} for a new one with the population
+     */
+    private static List<Long> getSurvivorHashes(AnnotationConfigApplicationContext context, long seed,
+                                                FitnessCache fitnessCache) {
+        TimetableGenerationService timetableGenerationService = context.getBean(TimetableGenerationService.class);
+        TimetableGenerationDemo timetableGenerationDemo = context.getBean(TimetableGenerationDemo.class);
+        ProblemIndex problemIndex = context.getBean(ProblemIndexService.class).createProblemIndex(
+                timetableGenerationDemo.createTimetableRequirements(context.getBean(
+                        TimetableRequirementsGenerationService.class)
+                        .readExampleTimetableRequirementsExample(EXAMPLE_FILE_NAME)));
+
+        SplittableRandom random = new SplittableRandom(seed);
+        PopulationArena arena = timetableGenerationService.createPopulationArena(problemIndex);
+        List<EvaluatedTimetable> population = timetableGenerationService.selection(
+                timetableGenerationService.generateInitialPopulation(problemIndex, random), arena);
+
+        int populationSize = population.size();
+        for (int i = populationSize - COPIES_COUNT; i < populationSize; ++i) {
+            arena.releaseTimetable(population.get(i));
+            population.set(i, arena.copyTimetable(population.get(0)));
+        }
+
+        if (fitnessCache == null) {
+            fitnessCache = timetableGenerationService.createFitnessCache(population);
+        } else {
+            for (EvaluatedTimetable timetable : population) {
+                fitnessCache.putPenalty(timetable.getHash(), timetable.getPenalty());
+            }
+        }
+
+        List<EvaluatedTimetable> survivors = timetableGenerationService.generation(problemIndex, population, random,
+                arena, fitnessCache);
+
+        return survivors.stream().map(EvaluatedTimetable::getHash).toList();
+    }
+}